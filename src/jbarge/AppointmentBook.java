@@ -0,0 +1,245 @@
+package jbarge;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+ /**
+ * The appointments of a terminal, sorted on the latest starting time (LST). The value of an appointment is an
+ * integer array with the indexes 0 = LAT, 1 = LST, 2 = PST, 3 = PT, 4 = EDT, see Terminal.appointments.
+ * The entries are kept in a tree ordered on (LST, booking number), where a later booking comes first, so a new
+ * appointment is placed before the appointments with the same LST. An index by barge gives the entry of a barge.
+ * Adding and removing an appointment takes logarithmic time, the first and second appointment are kept up to date
+ * after every change, because the terminal checks them every time a barge arrives or finishes.
+ * The appointments of the barges in the queue of the terminal are also kept in a second tree, see BargeQueue.
+ */
+ public class AppointmentBook implements Iterable<Barge> {
+
+ /**
+ * An appointment in the book. The LST and booking number are the key in the tree and do not change.
+ */
+ static final class Entry {
+ final Barge barge;
+ final int LST;
+ final long booking;
+ int[] appointment;
+ boolean queued;
+
+ Entry(Barge barge, int LST, long booking, int[] appointment){
+ this.barge = barge;
+ this.LST = LST;
+ this.booking = booking;
+ this.appointment = appointment;
+ }
+ }
+
+ static final Comparator<Entry> ORDER = new Comparator<Entry>(){
+ @Override
+ public int compare(Entry a, Entry b){
+ if(a.LST != b.LST){
+ return a.LST < b.LST ? -1 : 1;
+ }
+ // the later booking first
+ return a.booking > b.booking ? -1 : (a.booking == b.booking ? 0 : 1);
+ }
+ };
+
+ TreeSet<Entry> entries;
+ Map<Barge, Entry> index;
+
+ /**
+ * The entries of the barges that are in the queue of the terminal.
+ */
+ TreeSet<Entry> queued;
+
+ /**
+ * The number of bookings made, used to order the appointments with the same LST.
+ */
+ long bookings;
+
+ /**
+ * The barges of the first and second appointment, or null.
+ */
+ Barge first, second;
+
+ public AppointmentBook(){
+ this.entries = new TreeSet<Entry>(ORDER);
+ this.index = new HashMap<Barge, Entry>();
+ this.queued = new TreeSet<Entry>(ORDER);
+ this.bookings = 0;
+ }
+
+ /**
+ * Adds the appointment of a barge. If the barge already has an appointment (the port entrance is booked at
+ * the start and at the end of a rotation) the book keeps one entry, like the LinkedHashMap the terminal
+ * rebuilt before: if the new LST is after the old one the entry keeps its position and gets the new
+ * appointment, otherwise it moves to the position of the new LST and keeps the old appointment.
+ * @param barge the barge
+ * @param appointment the appointment, {LAT, LST, PST, PT, EDT}
+ */
+ public void add(Barge barge, int[] appointment){
+ int LST = appointment[1];
+ Entry old = this.index.get(barge);
+ if(old == null){
+ this.put(new Entry(barge, LST, bookings++, appointment));
+ }
+ else if(LST > old.appointment[1]){
+ old.appointment = appointment;
+ }
+ else{
+ this.entries.remove(old);
+ this.queued.remove(old);
+ Entry entry = new Entry(barge, LST, bookings++, old.appointment);
+ this.put(entry);
+ this.setQueued(entry, old.queued);
+ }
+ this.update();
+ }
+
+ void put(Entry entry){
+ this.entries.add(entry);
+ this.index.put(entry.barge, entry);
+ }
+
+ /**
+ * Removes the appointment of a barge.
+ * @return true if the barge had an appointment
+ */
+ public boolean remove(Barge barge){
+ Entry entry = this.index.remove(barge);
+ if(entry == null){
+ return false;
+ }
+ this.entries.remove(entry);
+ this.queued.remove(entry);
+ this.update();
+ return true;
+ }
+
+ /**
+ * Marks whether a barge is in the queue of the terminal. A barge without an appointment is ignored.
+ */
+ public void setQueued(Barge barge, boolean queued){
+ Entry entry = this.index.get(barge);
+ if(entry != null){
+ this.setQueued(entry, queued);
+ }
+ }
+
+ void setQueued(Entry entry, boolean queued){
+ entry.queued = queued;
+ if(queued){
+ this.queued.add(entry);
+ }
+ else{
+ this.queued.remove(entry);
+ }
+ }
+
+ /**
+ * Sets the first and second barge after a change.
+ */
+ void update(){
+ Iterator<Entry> it = this.entries.iterator();
+ this.first = it.hasNext() ? it.next().barge : null;
+ this.second = it.hasNext() ? it.next().barge : null;
+ }
+
+ /**
+ * @return the appointment of a barge, or null if the barge has no appointment
+ */
+ public int[] get(Barge barge){
+ Entry entry = this.index.get(barge);
+ return entry == null ? null : entry.appointment;
+ }
+
+ public boolean contains(Barge barge){
+ return this.index.containsKey(barge);
+ }
+
+ /**
+ * @return the barge with the first appointment, or null if the book is empty
+ */
+ public Barge first(){
+ return first;
+ }
+
+ /**
+ * @return the barge with the second appointment, or null if there is no second appointment
+ */
+ public Barge second(){
+ return second;
+ }
+
+ public int size(){
+ return this.entries.size();
+ }
+
+ public boolean isEmpty(){
+ return this.entries.isEmpty();
+ }
+
+ /**
+ * @return the barges in LST order, a copy that may be iterated while the book changes
+ */
+ public Barge[] barges(){
+ Barge[] barges = new Barge[this.entries.size()];
+ int i = 0;
+ for(Entry entry : this.entries){
+ barges[i++] = entry.barge;
+ }
+ return barges;
+ }
+
+ /**
+ * @return the barges that are in the queue of the terminal and have an appointment, in LST order. A copy that
+ *         may be iterated while the book changes.
+ */
+ public Barge[] queuedBarges(){
+ Barge[] barges = new Barge[this.queued.size()];
+ int i = 0;
+ for(Entry entry : this.queued){
+ barges[i++] = entry.barge;
+ }
+ return barges;
+ }
+
+ /**
+ * @return the appointments in LST order
+ */
+ public List<int[]> values(){
+ List<int[]> values = new ArrayList<int[]>(this.entries.size());
+ for(Entry entry : this.entries){
+ values.add(entry.appointment);
+ }
+ return values;
+ }
+
+ /**
+ * Iterates over the barges in LST order. The book may not change during the iteration.
+ */
+ @Override
+ public Iterator<Barge> iterator(){
+ final Iterator<Entry> it = this.entries.iterator();
+ return new Iterator<Barge>(){
+ @Override
+ public boolean hasNext(){
+ return it.hasNext();
+ }
+
+ @Override
+ public Barge next(){
+ return it.next().barge;
+ }
+
+ @Override
+ public void remove(){
+ throw new UnsupportedOperationException();
+ }
+ };
+ }
+ }
@@ -0,0 +1,48 @@
+package jbarge;
+
+ /**
+ * An immutable copy of the appointments of a terminal, sorted on the latest starting time like the
+ * appointments themselves. The columns are stored in parallel arrays: index i is the i-th appointment.
+ * A terminal creates a new snapshot only after its appointments changed, so all barges that request a
+ * waiting profile in the meantime share the same snapshot, see Terminal.snapshot().
+ */
+ public final class AppointmentSnapshot {
+
+ /**
+ * The number of appointments.
+ */
+ final int size;
+
+ /**
+ * The columns of the appointments, see Terminal.appointments.
+ */
+ final int[] LAT, LST, PST, PT, EDT;
+
+ /**
+ * The version of the appointments this snapshot was taken of, see Terminal.version.
+ */
+ final int version;
+
+ AppointmentSnapshot(AppointmentBook appointments, int version){
+ this.size = appointments.size();
+ this.LAT = new int[size];
+ this.LST = new int[size];
+ this.PST = new int[size];
+ this.PT = new int[size];
+ this.EDT = new int[size];
+ int i = 0;
+ for(int[] appointment : appointments.values()){
+ this.LAT[i] = appointment[0];
+ this.LST[i] = appointment[1];
+ this.PST[i] = appointment[2];
+ this.PT[i] = appointment[3];
+ this.EDT[i] = appointment[4];
+ i++;
+ }
+ this.version = version;
+ }
+
+ public int size(){
+ return size;
+ }
+ }
@@ -1,23 +1,21 @@
 package jbarge;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.ListIterator;
 import java.util.Map;
 
-import repast.simphony.context.Context;
-import repast.simphony.engine.schedule.ScheduleParameters;
-import repast.simphony.util.ContextUtils;
-import tdtsp.TDTSP;
-
-import com.google.common.collect.Table;
+import tdtsp.Rotation;
 
  /**
  * The Barge object represents the barge agent and everything that is associated with a barge.
  */
  public class Barge{
 
+ /**
+ * The simulation run this barge is part of.
+ */
+ SimulationContext sim;
+
  /**
  * The barge number is used to identify the barge. The first barge gets the number 0 so
  * that it is the same as the index number of the barge list in the simulation class.
@@ -51,15 +49,16 @@ import com.google.common.collect.Table;
  public int[][] sailingTimes;
 
  /**
- * Stores the waiting profile for each terminal. It is used as input for the TDTSP.
+ * Stores the waiting profile for each terminal, waitingProfiles[i] is the waiting profile of terminals.get(i).
+ * It is used as input for the TDTSP.
  */
- public Map<Terminal, WaitingProfile> waitingProfiles;
+ public WaitingProfile[] waitingProfiles;
 
  /**
- * This TDTSP object handles the computation of the route and also stores all
- * information associated with it.
+ * This Rotation object is computed by the route solver (SimulationContext.routeSolver) and stores the route
+ * and all information associated with it.
  */
- public TDTSP tdtsp;
+ public Rotation rotation;
 
  /**
  * This map stores the appointments. The key of the map is the Terminal. The value is
@@ -69,11 +68,11 @@ import com.google.common.collect.Table;
  Map<Terminal,int[]> appointments;
 
  /**
- * The remaining route is derived from the bestRoute in the TDTSP object.
+ * The route plan is derived from the tour in the Rotation object when the appointments are made.
  * It is used as input for scheduleArrivalTerminal method.
- * Every time a barge is finished at a terminal a node is removed from the remaining route.
+ * Every time a barge is finished at a terminal the route plan moves to the next node.
  */
- String remainingRoute;
+ RoutePlan plan;
 
  /**
  * To store the appointments of the terminals at the time of constructing the waiting profile.
@@ -110,16 +109,18 @@ import com.google.common.collect.Table;
  /**
  * The constructor of class Barge. This constructor assigns all attributes of a barge.
  * It also runs the commands that requests the waiting profiles from the terminals,
- * computes the best route using TDTSP and it schedules the arrival at the
+ * computes the best route using the route solver and it schedules the arrival at the
  * first terminal.
+ * @param sim The simulation run
  * @param bargeNumber The barge number is used to identify the barge
  * @param arrivalTime The arrival time at the port
  * @param terminals The terminals this barge has to visit
  * @param handlingtimes The handling time at each terminal
  */
- public Barge(int bargeNumber, int arrivalTime, ArrayList<Terminal> terminals,
+ public Barge(SimulationContext sim, int bargeNumber, int arrivalTime, ArrayList<Terminal> terminals,
  ArrayList<Integer> handlingtimes) {
 
+ this.sim = sim;
  this.bargeNumber = bargeNumber;
  this.arrivalTime = arrivalTime;
  this.terminals = terminals;
@@ -130,70 +131,56 @@ import com.google.common.collect.Table;
  this.totalWaitingTime=0;
  this.totalHandlingTime=0;
 
- this.createSailingTimes(Port.sailingtimesTable);
+ this.createSailingTimes(sim.sailingTimes);
  this.requestWaitingProfiles();
 
 
  // start time for TDTSP = arrival time in port
- this.tdtsp = new TDTSP(arrivalTime, this);
- expectedLeavetime=this.tdtsp.bestLeaveTime;
- bestSTime=this.tdtsp.bestSojournTime;
+ this.rotation = sim.routeSolver.solve(arrivalTime, this);
+ expectedLeavetime=this.rotation.bestLeaveTime;
+ bestSTime=this.rotation.bestSojournTime;
+ sim.stats.addRotation(this.rotation);
  // make appointments
  this.addAppointments();
 
  // save the appointments of terminals so that they can be written to the spreadsheet
- if(Port.eventsToExcel.equals("Yes")){
+ if(sim.eventSink.isRecording()){
  this.saveAppointmentsterminals();
  }
 
  this.state = SAILING;
 
- // to remove the first space of bestRoute we take this substring of bestRoute.
- this.remainingRoute = this.tdtsp.bestRoute.substring(1);
-
  // schedule the arrival at the first terminal.
- this.scheduleArrivalTerminal(this.remainingRoute, this.arrivalTime);
+ this.scheduleArrivalTerminal(this.arrivalTime);
  }
 
  /**
  * Creates the two dimensional sailing times array that only contains the terminals this
  * barge has to visit. It is stored in sailingTimes.
- * @param sailingTimeTable The sailing times table containing all terminals in the port
- * @param Terminals 
+ * @param sailingTimes The sailing times between all terminals in the port
  */
- public void createSailingTimes(Table<Terminal,Terminal,Integer> sailingTimeTable){
+ public void createSailingTimes(SailingTimeMatrix sailingTimes){
  int n = terminals.size();
- this.sailingTimes = new int[n][n];
-
+ int[] ids = new int[n];
  for(int i=0; i<n; i++){
- for(int j=0; j<n; j++){
- Terminal ti = terminals.get(i);
- Terminal tj = terminals.get(j);
- this.sailingTimes[i][j] = sailingTimeTable.get(ti,tj);
- }
+ ids[i] = terminals.get(i).id;
  }
+ this.sailingTimes = sailingTimes.subMatrix(ids);
  }
 
  /**
  * Requests waiting profiles from terminals and stores them in waitingProfiles.
  */
  public void requestWaitingProfiles(){
- this.waitingProfiles = new HashMap<Terminal, WaitingProfile>();
-
- for(Terminal terminal : terminals){
- WaitingProfile waitingProfile = terminal.constructWaitingProfile(this,
- this.arrivalTime);
- waitingProfiles.put(terminal, waitingProfile);
- }
+ this.requestWaitingProfiles(this.arrivalTime);
  }
  
 private void requestWaitingProfiles(int newArrivalTime) {
-	this.waitingProfiles = new HashMap<Terminal, WaitingProfile>();
+	this.waitingProfiles = new WaitingProfile[terminals.size()];
 
-	 for(Terminal terminal : terminals){
-	 WaitingProfile waitingProfile = terminal.constructWaitingProfile(this,
+	 for(int i=0; i<terminals.size(); i++){
+	 waitingProfiles[i] = terminals.get(i).constructWaitingProfile(this,
 			 newArrivalTime);
-	 waitingProfiles.put(terminal, waitingProfile);
 	 }
 }
 
@@ -201,108 +188,57 @@ private void requestWaitingProfiles(int newArrivalTime) {
  * Makes appointments with terminals using the best rotation.
 */
 public void addAppointments(){
-	
-	 this.appointments = new LinkedHashMap<Terminal, int[]>();
-	
-	 String bestRoute = tdtsp.bestRoute;
-	 int departureTime = this.arrivalTime;
-	 int departureNode = 0;
-	 for(int i=0; i<bestRoute.length(); i++){
-	 String c = ""+bestRoute.charAt(i);
-	 // check if the character is a " ". example of bestRoute: " 1 2 3 4 0"
-	 if(!c.equals(" ")){
-	 // return terminal object at index c from the terminals list
-	 int destination = Integer.parseInt(c);
-	 Terminal ter = this.terminals.get(destination);
-	
-	 // compute latest arrival time (LAT) and latest starting time (LST)
-	 int LAT = departureTime + this.sailingTimes[departureNode][destination];
-	 int LST = LAT + this.waitingProfiles.get(ter).getMaxWaitingTime(LAT);
-	
-	 // add the appointment to the schedule of this barge
-	 appointments.put(ter, new int[]{LAT,LST});
-	
-	 // send the LAT, LST and handling time to the terminal
-	 int handlingTime = this.handlingTimes.get(destination).intValue();
-	 ter.addAppointment(this, LAT, LST, handlingTime);
-	
-	 //update departureTime and departureNode for next iteration
-	 departureTime = LST + handlingTime;
-	 departureNode = destination;
-	 }
-	 }
+	 this.addAppointments(this.arrivalTime);
 	 }
+
+ /**
+ * Makes appointments with terminals using the best rotation and creates the route plan.
+ * @param newArrivalTime the start time of the rotation
+ */
 private void addAppointments(int newArrivalTime) {
 	
 	 this.appointments = new LinkedHashMap<Terminal, int[]>();
+	 this.plan = new RoutePlan(this, this.rotation.tour);
 	
-	 String bestRoute = tdtsp.bestRoute;
 	 int departureTime = newArrivalTime;
 	 int departureNode = 0;
-	 for(int i=0; i<bestRoute.length(); i++){
-	 String c = ""+bestRoute.charAt(i);
-	 // check if the character is a " ". example of bestRoute: " 1 2 3 4 0"
-	 if(!c.equals(" ")){
-	 // return terminal object at index c from the terminals list
-	 int destination = Integer.parseInt(c);
-	 Terminal ter = this.terminals.get(destination);
+	 // example of the tour: {0, 1, 2, 3, 4, 0}
+	 for(int i=0; i<this.plan.nodes.length; i++){
+	 int destination = this.plan.nodes[i];
+	 Terminal ter = this.plan.terminals[i];
 	
 	 // compute latest arrival time (LAT) and latest starting time (LST)
 	 int LAT = departureTime + this.sailingTimes[departureNode][destination];
-	 int LST = LAT + this.waitingProfiles.get(ter).getMaxWaitingTime(LAT);
+	 int LST = LAT + this.waitingProfiles[destination].getMaxWaitingTime(LAT);
 	
-	 // add the appointment to the schedule of this barge
-
+	 // add the appointment to the schedule of this barge and to the route plan
 	 appointments.put(ter, new int[]{LAT,LST});
+	 this.plan.setAppointment(i, LAT, LST);
 	
 	 // send the LAT, LST and handling time to the terminal
-	 int handlingTime = this.handlingTimes.get(destination).intValue();
+	 int handlingTime = this.plan.handlingTimes[i];
 	 ter.addAppointment(this, LAT, LST, handlingTime);
-	 //System.out.println("appointments at "+ter+ter.appointments+"after readding "+this);
 	
 	 //update departureTime and departureNode for next iteration
 	 departureTime = LST + handlingTime;
 	 departureNode = destination;
 	 }
-	 }
 	
 }
 	
 	 /**
-	 * Schedules the arrival at the next terminal.
-	 * @param route the (remaining) route. Example of the String: "0 1 2 3 4 5 0"
+	 * Schedules the arrival at the destination of the route plan.
 	 * @param time departure time from the previous point
 	 */
-	 public void scheduleArrivalTerminal(String route, int time){
-	
-	 // determine sailing time
-	 int sailingTime=0;
-	 Terminal terminalDestin = null;
-	 for(int i=0; i<route.length()-2; i++){
-	 String c = ""+route.charAt(i);
-	 if(!c.equals(" ")){
-	 int origin = Integer.parseInt(c);
-	 // the destination node is 2 indexes further in String route
-	 String d = ""+route.charAt(i+2);
-	 int destin = Integer.parseInt(d);
-	
-	 // get sailing time between the depot node and the first terminal
-	 sailingTime=this.sailingTimes[origin][destin];
+	 public void scheduleArrivalTerminal(int time){
+	
+	 // sailing time between the origin and the destination of the route plan
+	 int sailingTime=this.plan.sailingTime();
 	
 	 // set terminal to this terminal, this is input for the scheduled action below
-	 terminalDestin = this.terminals.get(destin);
+	 Terminal terminalDestin = this.plan.destinationTerminal();
 	
-	 // end loop
-	 break;
-	 }
-	 }
-	
-	 if(Port.model.equals("Stochastic")){
-	 sailingTime = (int) Math.round(Port.timeRNG.nextGaussian(sailingTime, Port.timeSigma));
-	 if(sailingTime<1){
-	 sailingTime=1;
-	 }
-	 }
+	 sailingTime = sim.durationModel.sailingTime(sailingTime);
 	
 	 // add to statistic
 	 this.totalSailingTime+=sailingTime;
@@ -311,9 +247,8 @@ private void addAppointments(int newArrivalTime) {
 	 int arrivalTimeTerminal = time + sailingTime;
 	
 	 // schedule the arrival in the simulation schedule
-	 Port.schedule.schedule(
-	 ScheduleParameters.createOneTime(arrivalTimeTerminal), this, "arriveAtTerminal",
-	 terminalDestin, arrivalTimeTerminal);
+	 sim.schedule.schedule(arrivalTimeTerminal, EventScheduler.RANDOM_PRIORITY,
+	 new ArriveAtTerminal(this, terminalDestin, arrivalTimeTerminal));
 	
 	 }
 	
@@ -330,15 +265,14 @@ private void addAppointments(int newArrivalTime) {
 	// set state of barge to waiting
 	 this.state = Barge.WAITING;
 	
-	 if(Port.eventsToExcel.equals("Yes")){
-	 Port.stats.addEvent(time, this.bargeNumber, ("Arrived at Terminal " + terminal.toString()+
+	 if(sim.eventSink.isRecording()){
+	 sim.eventSink.addEvent(time, this.bargeNumber, ("Arrived at Terminal " + terminal.toString()+
 	 ". Expected - actual = " + this.appointments.get(terminal)[0]+" - " + time + " = "
 	 + (this.appointments.get(terminal)[0]-time)));
 	 }
 	
 	 // schedule the start handling of this barge at the terminal in the simulation schedule
-	 Port.schedule.schedule(
-	 ScheduleParameters.createOneTime(time), terminal, "bargeArrives", this, time);
+	 sim.schedule.schedule(time, EventScheduler.RANDOM_PRIORITY, new Terminal.BargeArrives(terminal, this, time));
 	 }
 	
 	 /**
@@ -352,32 +286,22 @@ private void addAppointments(int newArrivalTime) {
 	this.visitedTerminals.add(ter);
 	
 	 // if the barge visits more than 1 terminal
-	 // remove a node from remainingRoute (example: "1 2 3 4 0" ---> "2 3 4 0")
-	 if(this.remainingRoute.length()>3){
-	 this.remainingRoute = this.remainingRoute.substring(2);
-	 }
+	 // move the route plan to the next node (example: {0, 1, 2, 3, 4, 0} from 1 to 2)
+	 this.plan.next();
 	
 	 // check if there is another terminal to visit
-	 if(this.remainingRoute.length()>3){
-	 this.scheduleArrivalTerminal(this.remainingRoute, time);
+	 if(this.plan.hasNextTerminal()){
+	 this.scheduleArrivalTerminal(time);
 	 }
 	 else{
 	 // sail to port exit point, i.e., schedule leaving the port in the simulation schedule
-	 int lastTerminal = Integer.parseInt(""+this.remainingRoute.charAt(0));
-	 int exitPoint = Integer.parseInt(""+this.remainingRoute.charAt(2));
-	 int sailingTime = this.sailingTimes[lastTerminal][exitPoint];
-	 if(Port.model.equals("Stochastic")){
-	 sailingTime = (int) Math.round(Port.timeRNG.nextGaussian(sailingTime, Port.timeSigma));
-	 if(sailingTime<1){
-	 sailingTime=1;
-	 }
-	 }
+	 int sailingTime = this.plan.sailingTime();
+	 sailingTime = sim.durationModel.sailingTime(sailingTime);
 	 // add to statistic
 	 this.totalSailingTime+=sailingTime;
 	 // schedule arrival at exit point
 	 int arrivalTimeAtExit = time + sailingTime;
-	 Port.schedule.schedule(ScheduleParameters.createOneTime(arrivalTimeAtExit,ScheduleParameters.LAST_PRIORITY)
-	 , this, "leavePort", arrivalTimeAtExit);
+	 sim.schedule.schedule(arrivalTimeAtExit, EventScheduler.LAST_PRIORITY, new LeavePort(this, arrivalTimeAtExit));
 	 }
 	 }
 	
@@ -391,37 +315,40 @@ private void addAppointments(int newArrivalTime) {
 		 LEFT++; 
 	 if(this.bargeNumber>-1 && this.bargeNumber<=800000){
 	
-	 Port.stats.bargesLeftPort++;
-	 Port.stats.descriptiveStatistics[0].addValue(bestSTime);
+	 sim.stats.bargesLeftPort++;
+	 sim.stats.descriptiveStatistics[0].addValue(bestSTime);
 	
 	 this.actualSojourntime = time-this.arrivalTime;
-	 Port.stats.descriptiveStatistics[1].addValue(this.actualSojourntime);
+	 sim.stats.descriptiveStatistics[1].addValue(this.actualSojourntime);
 	
-	 Port.stats.descriptiveStatistics[3].addValue(this.totalHandlingTime);
-	 Port.stats.descriptiveStatistics[4].addValue(this.totalSailingTime);
+	 sim.stats.descriptiveStatistics[3].addValue(this.totalHandlingTime);
+	 sim.stats.descriptiveStatistics[4].addValue(this.totalSailingTime);
 	
 	 this.totalWaitingTime = time-this.arrivalTime - this.totalHandlingTime - this.totalSailingTime;
-	 Port.stats.descriptiveStatistics[2].addValue(this.totalWaitingTime);
+	 sim.stats.descriptiveStatistics[2].addValue(this.totalWaitingTime);
 	
 	 differenceExpectedActual = expectedLeavetime-time;
 	
 	 this.determineSatisfaction();
 	
-	 if(Port.eventsToExcel.equals("Yes")){
-	 Port.stats.addEvent(time, this.bargeNumber, ("Left port. Expected - actual = " +
+	 if(sim.eventSink.isRecording()){
+	 sim.eventSink.addEvent(time, this.bargeNumber, ("Left port. Expected - actual = " +
 	 expectedLeavetime + " - "+ time + " = " + differenceExpectedActual));
 	 }
 	
 	 //add to barge stats
-	 if(Port.bargesDetailsToExcel.equals("Yes")){
-	 Port.stats.addSinglebargeinfo(this);
+	 if(sim.bargesDetailsToExcel.equals("Yes")){
+	 sim.stats.addSinglebargeinfo(this);
 	 }
 	 }
 	
-	 // remove from context: first get the context by using one of the terminals, then use it to remove the barge
-	 @SuppressWarnings("unchecked")
-	 Context<Object> context = ContextUtils.getContext(Port.terminals.get(0));
-	context.remove(this);
+	 // the appointment at the port entrance is only removed here, so the barge is not kept by its book
+	 this.terminals.get(0).removeAppointment(this);
+
+	 // remove from the repast context, a headless run has no context
+	 if(sim.context != null){
+	 sim.context.remove(this);
+	 }
 	 }
 	
 	 public String toString(){
@@ -521,50 +448,119 @@ private void addAppointments(int newArrivalTime) {
 		 }
 		 }
 
+	/**
+	 * Computes the rotation again after the barge was rejected at a terminal. The re-plan starts from the
+	 * remaining route: only the appointments at the port entrance and the unvisited terminals are removed,
+	 * the sailing times of the unvisited terminals are taken from the current sailing times and the
+	 * remaining part of the current tour is the incumbent of the route solver (see RouteSolver.resolve).
+	 * @param time the time of the rejection, the start time of the new rotation
+	 */
 	public void recalculateRotation(int time) {
-		//reset states
-		for(Terminal ter: this.terminals){
-			ter.appointments.remove(this);			
+		// the unvisited terminals in the order of the current tour, starting with the destination of the route plan
+		ArrayList<Terminal> unvisited = new ArrayList<Terminal>();
+		for(int i=0; i<this.plan.remaining(); i++){
+			unvisited.add(this.terminals.get(this.plan.remainingNode(i)));
+		}
+
+		// invalidate the appointments that are not visited yet. the appointments at the visited
+		// terminals were removed when the handling finished
+		this.terminals.get(0).removeAppointment(this);
+		for(Terminal ter: unvisited){
+			ter.removeAppointment(this);
 		}
 
-		ListIterator<Terminal> it = visitedTerminals.listIterator();    
-        while(it.hasNext()) {
-        	Terminal t=it.next();
-        	//System.out.println("wants to delete: "+t);
-        	this.handlingTimes.remove(this.terminals.indexOf(t));
-            this.terminals.remove(t);
-        }
-        this.visitedTerminals.clear();
-        this.waitingProfiles.clear();
-        this.appointments.clear();
-        this.state=WAITING;
-        this.terminalAppointments="";		
-		 this.createSailingTimes(Port.sailingtimesTable);
-		 this.requestWaitingProfiles(time);
-
-		 // start time for TDTSP = arrival time in port
-		 this.tdtsp = new TDTSP(time, this);
+		// keep the port entrance and the unvisited terminals in the order of the terminals list,
+		// node[i] is the current index of new index i
+		int[] node = new int[unvisited.size()+1];
+		ArrayList<Terminal> terminals = new ArrayList<Terminal>();
+		ArrayList<Integer> handlingTimes = new ArrayList<Integer>();
+		for(int i=0; i<this.terminals.size(); i++){
+			Terminal t = this.terminals.get(i);
+			if(i == 0 || unvisited.contains(t)){
+				node[terminals.size()] = i;
+				terminals.add(t);
+				handlingTimes.add(this.handlingTimes.get(i));
+			}
+		}
+		int n = terminals.size();
+		int[][] sailingTimes = new int[n][n];
+		for(int i=0; i<n; i++){
+			for(int j=0; j<n; j++){
+				sailingTimes[i][j] = this.sailingTimes[node[i]][node[j]];
+			}
+		}
+
+		// the rest of the current tour in the new indexes
+		int[] incumbent = new int[n+1];
+		for(int i=0; i<unvisited.size(); i++){
+			incumbent[i+1] = terminals.indexOf(unvisited.get(i));
+		}
+
+		this.terminals = terminals;
+		this.handlingTimes = handlingTimes;
+		this.sailingTimes = sailingTimes;
+		this.visitedTerminals.clear();
+		this.appointments.clear();
+		this.state=WAITING;
+		this.terminalAppointments="";
+		this.requestWaitingProfiles(time);
+
+		// start time for TDTSP = time of the rejection
+		this.rotation = sim.routeSolver.resolve(time, this, incumbent);
+		sim.stats.addRotation(this.rotation);
 
 		 // make appointments
 		 this.addAppointments(time);
 
 		 // save the appointments of terminals so that they can be written to the spreadsheet
-		 if(Port.eventsToExcel.equals("Yes")){
+		 if(sim.eventSink.isRecording()){
 		 this.saveAppointmentsterminals();
 		 }
 
 		 this.state = SAILING;
 
-		 // to remove the first space of bestRoute we take this substring of bestRoute.
-		 this.remainingRoute = this.tdtsp.bestRoute.substring(1);
-
 		 // schedule the arrival at the first terminal.
-		 this.scheduleArrivalTerminal(this.remainingRoute, time);
+		 this.scheduleArrivalTerminal(time);
 		
 	}
 
-	
+	 /**
+	 * The event of arriveAtTerminal().
+	 */
+	 static class ArriveAtTerminal implements ScheduledAction{
 
+	 Barge barge;
+	 Terminal terminal;
+	 int time;
 
-		 }
-	
\ No newline at end of file
+	 ArriveAtTerminal(Barge barge, Terminal terminal, int time){
+	 this.barge = barge;
+	 this.terminal = terminal;
+	 this.time = time;
+	 }
+
+	 @Override
+	 public void execute(){
+	 barge.arriveAtTerminal(terminal, time);
+	 }
+	 }
+
+	 /**
+	 * The event of leavePort().
+	 */
+	 static class LeavePort implements ScheduledAction{
+
+	 Barge barge;
+	 int time;
+
+	 LeavePort(Barge barge, int time){
+	 this.barge = barge;
+	 this.time = time;
+	 }
+
+	 @Override
+	 public void execute(){
+	 barge.leavePort(time);
+	 }
+	 }
+}
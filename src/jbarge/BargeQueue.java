@@ -0,0 +1,66 @@
+package jbarge;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+ /**
+ * The queue of barges at a terminal, in the order of arrival. The barges are kept in a linked hash set, so
+ * checking whether a barge is in the queue and removing a barge take constant time.
+ * The queue marks the barges in the appointment book of the terminal, see AppointmentBook.queuedBarges(),
+ * such that the terminal can go over the barges that are queued and booked in LST order.
+ */
+ public class BargeQueue implements Iterable<Barge> {
+
+ LinkedHashSet<Barge> barges;
+
+ /**
+ * The appointments of the terminal.
+ */
+ AppointmentBook appointments;
+
+ public BargeQueue(AppointmentBook appointments){
+ this.barges = new LinkedHashSet<Barge>();
+ this.appointments = appointments;
+ }
+
+ /**
+ * Adds a barge at the end of the queue.
+ */
+ public void add(Barge barge){
+ this.barges.add(barge);
+ this.appointments.setQueued(barge, true);
+ }
+
+ /**
+ * Removes a barge from the queue.
+ * @return true if the barge was in the queue
+ */
+ public boolean remove(Barge barge){
+ this.appointments.setQueued(barge, false);
+ return this.barges.remove(barge);
+ }
+
+ public boolean contains(Barge barge){
+ return this.barges.contains(barge);
+ }
+
+ /**
+ * @return the first barge in the queue, or null if the queue is empty
+ */
+ public Barge peek(){
+ return this.barges.isEmpty() ? null : this.barges.iterator().next();
+ }
+
+ public int size(){
+ return this.barges.size();
+ }
+
+ public boolean isEmpty(){
+ return this.barges.isEmpty();
+ }
+
+ @Override
+ public Iterator<Barge> iterator(){
+ return this.barges.iterator();
+ }
+ }
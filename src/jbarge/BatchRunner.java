@@ -0,0 +1,187 @@
+package jbarge;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+ /**
+ * Runs a batch of headless simulations in parallel, one run per configuration, on a pool with a worker per processor.
+ * Every run has its own SimulationContext, see HeadlessRunner. A run is reduced to its rows for the output
+ * (Statistics.Summary) as soon as it ends, so the SimulationContext of a completed run is not kept. The statistics of
+ * the runs are appended to one output spreadsheet in the order of the configurations, as soon as a run and the runs
+ * before it are completed, so the output does not depend on the order in which the runs complete.
+ */
+ public class BatchRunner {
+
+ /**
+ * The parameters of a run that can be configured in the repast GUI.
+ */
+ public static class Config{
+
+ long seed;
+ double arrivalRate;
+ String terminalLogic;
+ int slack;
+ String slackMethod;
+ int slackDenominator;
+ String model;
+ String routeMethod;
+
+ public Config(long seed, double arrivalRate, String terminalLogic, int slack, String slackMethod,
+ int slackDenominator, String model, String routeMethod){
+ this.seed = seed;
+ this.arrivalRate = arrivalRate;
+ this.terminalLogic = terminalLogic;
+ this.slack = slack;
+ this.slackMethod = slackMethod;
+ this.slackDenominator = slackDenominator;
+ this.model = model;
+ this.routeMethod = SimulationContext.checkRouteMethod(routeMethod);
+ }
+
+ /**
+ * Parses a configuration: seed,arrivalRate,terminalLogic,slack,slackMethod,slackDenominator,model,routeMethod
+ */
+ public static Config parse(String line){
+ String[] values = line.split(",");
+ if(values.length != 8){
+ throw new IllegalArgumentException("Invalid configuration: " + line);
+ }
+ return new Config(Long.parseLong(values[0].trim()), Double.parseDouble(values[1].trim()), values[2].trim(),
+ Integer.parseInt(values[3].trim()), values[4].trim(), Integer.parseInt(values[5].trim()), values[6].trim(),
+ values[7].trim());
+ }
+
+ @Override
+ public String toString(){
+ return seed + "," + arrivalRate + "," + terminalLogic + "," + slack + "," + slackMethod + ","
+ + slackDenominator + "," + model + "," + routeMethod;
+ }
+ }
+
+ String dataFile, outputFile;
+ int threads;
+
+ /**
+ * @param dataFile the spreadsheet with the sailing times
+ * @param outputFile the spreadsheet to which the statistics are appended
+ * @param threads the number of workers, 0 for a worker per processor
+ */
+ public BatchRunner(String dataFile, String outputFile, int threads){
+ this.dataFile = dataFile;
+ this.outputFile = outputFile;
+ this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+ }
+
+ /**
+ * Runs the configurations and appends the statistics to the output spreadsheet. The runs are numbered in the
+ * order of the configurations, starting at 1. A run that fails is reported and left out of the output.
+ * @param configs the configurations
+ * @return the number of runs completed
+ * @throws InterruptedException if the thread is interrupted while it waits for a run
+ */
+ public int run(List<Config> configs) throws InterruptedException{
+ ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, configs.size())));
+ try{
+ List<Future<Statistics.Summary>> runs = new ArrayList<Future<Statistics.Summary>>();
+ for(int i=0; i<configs.size(); i++){
+ runs.add(executor.submit(new Run(configs.get(i), i+1)));
+ }
+
+ // merge the statistics in the order of the configurations
+ int completed = 0;
+ for(int i=0; i<runs.size(); i++){
+ try{
+ Statistics.Summary summary = runs.get(i).get();
+ runs.set(i, null);
+ summary.toExcel();
+ completed++;
+ }
+ catch(ExecutionException e){
+ System.err.println("Scenario " + (i+1) + " (" + configs.get(i) + ") failed.");
+ e.getCause().printStackTrace();
+ }
+ }
+ return completed;
+ }
+ finally{
+ executor.shutdownNow();
+ }
+ }
+
+ /**
+ * A run of a configuration, reduced to its rows for the output.
+ */
+ class Run implements Callable<Statistics.Summary>{
+
+ Config config;
+ int scenario;
+
+ Run(Config config, int scenario){
+ this.config = config;
+ this.scenario = scenario;
+ }
+
+ @Override
+ public Statistics.Summary call(){
+ SimulationContext sim = HeadlessRunner.create(config.seed, config.arrivalRate, config.terminalLogic,
+ config.model, config.slack, config.slackMethod, config.slackDenominator, config.routeMethod);
+ // the runs share the processors, so the Parallel route method of a run gets its share of them
+ sim.parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+ sim.createPolicies();
+ sim.outputFile = outputFile;
+ sim.outputAtEnd = false;
+ sim.seedGenerators = true;
+ sim.scenario = scenario;
+ HeadlessRunner.run(sim, dataFile);
+ return sim.stats.summary();
+ }
+ }
+
+ /**
+ * Reads the configurations from a file, one per line, see Config.parse(). Empty lines and lines that start with #
+ * are skipped.
+ */
+ public static List<Config> readConfigs(String file) throws IOException{
+ List<Config> configs = new ArrayList<Config>();
+ BufferedReader in = new BufferedReader(new FileReader(file));
+ try{
+ String line;
+ while((line = in.readLine()) != null){
+ line = line.trim();
+ if(line.length() > 0 && !line.startsWith("#")){
+ configs.add(Config.parse(line));
+ }
+ }
+ }
+ finally{
+ in.close();
+ }
+ return configs;
+ }
+
+ /**
+ * Usage: BatchRunner dataFile outputFile configFile [threads]
+ */
+ public static void main(String[] args) throws IOException, InterruptedException{
+ if(args.length != 3 && args.length != 4){
+ System.err.println("Usage: BatchRunner dataFile outputFile configFile [threads]");
+ System.exit(1);
+ }
+ List<Config> configs = readConfigs(args[2]);
+ BatchRunner runner = new BatchRunner(args[0], args[1], args.length == 4 ? Integer.parseInt(args[3]) : 0);
+
+ long start = System.nanoTime();
+ int completed = runner.run(configs);
+ double seconds = (System.nanoTime() - start) / 1e9;
+ System.out.println(completed + " of " + configs.size() + " scenarios completed in " + seconds + " s on "
+ + runner.threads + " workers");
+ }
+ }
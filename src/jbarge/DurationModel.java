@@ -0,0 +1,82 @@
+package jbarge;
+
+ /**
+ * The actual sailing and handling times of a barge, given the planned times. The model is a parameter which can be
+ * configured in the repast GUI. It is resolved once in SimulationContext.readParameters(), see SimulationContext.durationModel.
+ */
+ public abstract class DurationModel {
+
+ /**
+ * @param sailingTime the planned sailing time
+ * @return the actual sailing time
+ */
+ public abstract int sailingTime(int sailingTime);
+
+ /**
+ * @param handlingTime the planned handling time
+ * @return the actual handling time
+ */
+ public abstract int handlingTime(int handlingTime);
+
+ /**
+ * Creates the duration model of the model of a simulation run. "Stochastic" draws the times from a normal
+ * distribution around the planned times with standard deviation timeSigma, any other model uses the planned times.
+ * @param sim the simulation run, see SimulationContext.model
+ * @return the duration model
+ */
+ public static DurationModel create(SimulationContext sim){
+ if(sim.model.equals("Stochastic")){
+ return new Stochastic(sim);
+ }
+ return new Deterministic();
+ }
+
+ static class Deterministic extends DurationModel{
+
+ @Override
+ public int sailingTime(int sailingTime){
+ return sailingTime;
+ }
+
+ @Override
+ public int handlingTime(int handlingTime){
+ return handlingTime;
+ }
+ }
+
+ static class Stochastic extends DurationModel{
+
+ /**
+ * The simulation run with the random data generator timeRNG.
+ */
+ SimulationContext sim;
+
+ Stochastic(SimulationContext sim){
+ this.sim = sim;
+ }
+
+ /**
+ * The sailing time is at least 1.
+ */
+ @Override
+ public int sailingTime(int sailingTime){
+ sailingTime = (int) Math.round(sim.timeRNG.nextGaussian(sailingTime, sim.timeSigma));
+ if(sailingTime<1){
+ sailingTime=1;
+ }
+ return sailingTime;
+ }
+
+ /**
+ * The handling time is at least 10.
+ */
+ @Override
+ public int handlingTime(int handlingTime){
+ handlingTime = (int) Math.round(sim.timeRNG.nextGaussian(handlingTime, sim.timeSigma));
+ if(handlingTime<10){
+ handlingTime=10;
+ }
+ return handlingTime;
+ }
+ }
+ }
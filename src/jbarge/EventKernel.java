@@ -0,0 +1,262 @@
+package jbarge;
+
+import java.util.Arrays;
+
+ /**
+ * A discrete event scheduler that runs a simulation without repast, e.g., for batch experiments. It does not depend
+ * on repast, see ScheduledAction.
+ * The events are kept in a binary heap on the time, the priority and the sequence number of the event, stored in
+ * arrays of primitives. Events at the same time are executed in the order of their priority, from FIRST_PRIORITY
+ * to LAST_PRIORITY, and events with the same priority in the order they were scheduled. Unlike repast, events
+ * without a priority (RANDOM_PRIORITY) are not shuffled, but executed as priority 0 in the order they were scheduled,
+ * so a run is deterministic. When several of these events are at the same time, e.g., barges that arrive at the same
+ * terminal at the same time, the order differs from repast, and so can the statistics of the run.
+ * With event fusion an event that an event schedules at the current time, e.g., the barge arrives at the terminal
+ * (Barge.ArriveAtTerminal), then the terminal handles the barge (Terminal.BargeArrives, Terminal.HandleBarge), is
+ * put in a fast lane instead of the heap if no event in the heap is executed before it. The events in the fast lane
+ * are executed in order after the event that scheduled them returns, so the order of the events does not change.
+ */
+ public class EventKernel implements EventScheduler {
+
+ /**
+ * The heap: the event at index i is executed before its children at index 2i+1 and 2i+2.
+ */
+ double[] times, priorities;
+ long[] sequences;
+ ScheduledAction[] actions;
+ int size;
+
+ /**
+ * The fast lane: the events at the current time that are executed before the events in the heap, from laneHead to
+ * laneTail in order.
+ */
+ double[] lanePriorities;
+ long[] laneSequences;
+ ScheduledAction[] laneActions;
+ int laneHead, laneTail;
+
+ /**
+ * Whether the events at the current time are fused, see fused.
+ */
+ boolean fusion;
+
+ /**
+ * The sequence number of the next event.
+ */
+ long sequence;
+
+ /**
+ * The time of the event that is executed.
+ */
+ double tick;
+
+ /**
+ * Whether endRun() was called, the run ends after the events at endTick.
+ */
+ boolean ending;
+ double endTick;
+
+ /**
+ * Whether run() executes the events.
+ */
+ boolean running;
+
+ /**
+ * The number of events executed, and the number of events executed from the fast lane.
+ */
+ long executed, fused;
+
+ public EventKernel(){
+ this(1024, true);
+ }
+
+ /**
+ * @param capacity the initial number of events in the heap
+ * @param fusion whether the events at the current time are fused, see fused
+ */
+ public EventKernel(int capacity, boolean fusion){
+ times = new double[capacity];
+ priorities = new double[capacity];
+ sequences = new long[capacity];
+ actions = new ScheduledAction[capacity];
+ lanePriorities = new double[64];
+ laneSequences = new long[64];
+ laneActions = new ScheduledAction[64];
+ this.fusion = fusion;
+ }
+
+ @Override
+ public double getTickCount(){
+ return tick;
+ }
+
+ @Override
+ public void schedule(double time, double priority, ScheduledAction action){
+ if(time < tick){
+ throw new IllegalArgumentException("Event at time " + time + " is scheduled at time " + tick);
+ }
+ if(Double.isNaN(priority)){
+ priority = 0;
+ }
+ if(fusion && running && time == tick && laneTail < laneActions.length
+ && (laneHead == laneTail || priority <= lanePriorities[laneTail-1])
+ && (size == 0 || before(time, priority, sequence, times[0], priorities[0], sequences[0]))){
+ // the event is executed after the events in the fast lane and before the events in the heap
+ lanePriorities[laneTail] = priority;
+ laneSequences[laneTail] = sequence++;
+ laneActions[laneTail++] = action;
+ return;
+ }
+ if(size == times.length){
+ grow();
+ }
+ siftUp(size++, time, priority, sequence++, action);
+ }
+
+ @Override
+ public void endRun(){
+ if(!ending){
+ ending = true;
+ endTick = tick;
+ }
+ }
+
+ /**
+ * Executes the events until there are no more events, or until the time endRun() was called.
+ * @return the number of events executed
+ */
+ public long run(){
+ running = true;
+ try{
+ while(true){
+ ScheduledAction action;
+ // an event in the heap can be scheduled before an event in the fast lane after the lane event was scheduled
+ if(laneHead < laneTail && (size == 0 || before(tick, lanePriorities[laneHead], laneSequences[laneHead],
+ times[0], priorities[0], sequences[0]))){
+ action = laneActions[laneHead];
+ laneActions[laneHead++] = null;
+ if(laneHead == laneTail){
+ laneHead = 0;
+ laneTail = 0;
+ }
+ fused++;
+ }
+ else if(size > 0 && !(ending && times[0] > endTick)){
+ tick = times[0];
+ action = actions[0];
+ removeFirst();
+ }
+ else{
+ break;
+ }
+ executed++;
+ action.execute();
+ }
+ }
+ finally{
+ running = false;
+ }
+ return executed;
+ }
+
+ /**
+ * @return the number of events executed
+ */
+ public long executed(){
+ return executed;
+ }
+
+ /**
+ * @return the number of events that were executed from the fast lane instead of the heap
+ */
+ public long fused(){
+ return fused;
+ }
+
+ /**
+ * @return the number of events scheduled and not executed yet
+ */
+ public int size(){
+ return size + laneTail - laneHead;
+ }
+
+ void grow(){
+ int capacity = 2*times.length;
+ times = Arrays.copyOf(times, capacity);
+ priorities = Arrays.copyOf(priorities, capacity);
+ sequences = Arrays.copyOf(sequences, capacity);
+ actions = Arrays.copyOf(actions, capacity);
+ }
+
+ void removeFirst(){
+ size--;
+ int last = size;
+ ScheduledAction action = actions[last];
+ actions[last] = null;
+ if(last > 0){
+ siftDown(0, times[last], priorities[last], sequences[last], action);
+ }
+ }
+
+ /**
+ * @return whether the first event is executed before the second event
+ */
+ static boolean before(double time, double priority, long sequence, double time2, double priority2, long sequence2){
+ if(time != time2){
+ return time < time2;
+ }
+ if(priority != priority2){
+ return priority > priority2;
+ }
+ return sequence < sequence2;
+ }
+
+ /**
+ * Moves the event up from the empty index i to its place in the heap.
+ */
+ void siftUp(int i, double time, double priority, long sequence, ScheduledAction action){
+ while(i > 0){
+ int parent = (i-1) >>> 1;
+ if(!before(time, priority, sequence, times[parent], priorities[parent], sequences[parent])){
+ break;
+ }
+ move(parent, i);
+ i = parent;
+ }
+ set(i, time, priority, sequence, action);
+ }
+
+ /**
+ * Moves the event down from the empty index i to its place in the heap.
+ */
+ void siftDown(int i, double time, double priority, long sequence, ScheduledAction action){
+ int half = size >>> 1;
+ while(i < half){
+ int child = 2*i + 1;
+ int right = child + 1;
+ if(right < size && before(times[right], priorities[right], sequences[right], times[child], priorities[child], sequences[child])){
+ child = right;
+ }
+ if(before(time, priority, sequence, times[child], priorities[child], sequences[child])){
+ break;
+ }
+ move(child, i);
+ i = child;
+ }
+ set(i, time, priority, sequence, action);
+ }
+
+ void move(int from, int to){
+ times[to] = times[from];
+ priorities[to] = priorities[from];
+ sequences[to] = sequences[from];
+ actions[to] = actions[from];
+ }
+
+ void set(int i, double time, double priority, long sequence, ScheduledAction action){
+ times[i] = time;
+ priorities[i] = priority;
+ sequences[i] = sequence;
+ actions[i] = action;
+ }
+ }
@@ -0,0 +1,46 @@
+package jbarge;
+
+ /**
+ * Schedules the events of a simulation run. The agents schedule their events at the scheduler of their run, see
+ * SimulationContext.schedule, which is the repast schedule (RepastScheduler) in the repast GUI and an EventKernel
+ * in a headless run. An event at an earlier time is executed first, at the same time an event with a higher
+ * priority is executed first. The priorities have the same values as the priorities of the repast
+ * ScheduleParameters, but the interface does not depend on repast.
+ */
+ public interface EventScheduler {
+
+ /**
+ * The priority of an event that is executed before the other events at the same time.
+ */
+ double FIRST_PRIORITY = Double.POSITIVE_INFINITY;
+
+ /**
+ * The priority of an event that is executed after the other events at the same time.
+ */
+ double LAST_PRIORITY = Double.NEGATIVE_INFINITY;
+
+ /**
+ * The priority of an event without a priority. Repast executes these events in a random order, the EventKernel
+ * executes them as priority 0 in the order they were scheduled.
+ */
+ double RANDOM_PRIORITY = Double.NaN;
+
+ /**
+ * @return the current time of the simulation clock
+ */
+ double getTickCount();
+
+ /**
+ * Schedules an event. The events of the agents are typed actions that call the method of the agent directly, e.g.,
+ * Terminal.HandleBarge, so an event is not dispatched by reflection.
+ * @param time the time of the event
+ * @param priority the priority of the event
+ * @param action the action
+ */
+ void schedule(double time, double priority, ScheduledAction action);
+
+ /**
+ * Ends the run after the events at the current time.
+ */
+ void endRun();
+ }
@@ -0,0 +1,66 @@
+package jbarge;
+
+ /**
+ * Receives the events of the simulation that are written to the spreadsheet. Whether the events are written is a
+ * parameter which can be configured in the repast GUI. It is resolved once in SimulationContext.readParameters(), see
+ * SimulationContext.eventSink. The description of an event is only built if isRecording() is true.
+ */
+ public abstract class EventSink {
+
+ /**
+ * @return true if the events are recorded
+ */
+ public abstract boolean isRecording();
+
+ /**
+ * Records an event.
+ * @param time the time of the event
+ * @param bargeNumber the barge of the event
+ * @param description the description of the event
+ */
+ public abstract void addEvent(int time, int bargeNumber, String description);
+
+ /**
+ * Creates the event sink of the eventsToExcel parameter of a simulation run. "Yes" records the events in the
+ * statistics of the run, with any other value the events are ignored.
+ * @param sim the simulation run, see SimulationContext.eventsToExcel
+ * @return the event sink
+ */
+ public static EventSink create(SimulationContext sim){
+ if(sim.eventsToExcel.equals("Yes")){
+ return new Recording(sim);
+ }
+ return new None();
+ }
+
+ static class Recording extends EventSink{
+
+ SimulationContext sim;
+
+ Recording(SimulationContext sim){
+ this.sim = sim;
+ }
+
+ @Override
+ public boolean isRecording(){
+ return true;
+ }
+
+ @Override
+ public void addEvent(int time, int bargeNumber, String description){
+ sim.stats.addEvent(time, bargeNumber, description);
+ }
+ }
+
+ static class None extends EventSink{
+
+ @Override
+ public boolean isRecording(){
+ return false;
+ }
+
+ @Override
+ public void addEvent(int time, int bargeNumber, String description){
+ }
+ }
+ }
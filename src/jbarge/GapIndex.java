@@ -0,0 +1,156 @@
+package jbarge;
+
+import java.util.Arrays;
+
+ /**
+ * The idle gaps in the appointments of a terminal. The appointments are stored in LST order, like the
+ * appointments of the terminal, and gap i is the time between the EDT of appointment i-1 and the LST of
+ * appointment i. Gap 0 is before the first appointment and gap size is after the last appointment.
+ * A barge with handling time d can start in gap i from the EDT of appointment i-1 to the LST of appointment i
+ * minus d, so the waiting profile of a barge is the set of gaps trimmed by its handling time, see
+ * WaitingProfile.startIntervals(). A max segment tree over the gap lengths finds the first gap that is long
+ * enough, so the earliest start of a barge is found in logarithmic time without building the waiting profile.
+ * The index is rebuilt in linear time when a waiting profile is requested after the appointments changed, see
+ * Terminal.gaps(), so a terminal that is not asked for waiting profiles, like the port entrance, does not keep it.
+ */
+ public class GapIndex {
+
+ /**
+ * The LST and EDT of the appointments in LST order.
+ */
+ int[] LST, EDT;
+ int size;
+
+ /**
+ * The version of the appointments the index was built of, see Terminal.version.
+ */
+ int version;
+
+ /**
+ * The max segment tree over the lengths of the gaps 1..size. The leaves start at index leaves.
+ * Gap 0 has no length (it has no start) and gap size has length infinity.
+ */
+ int[] tree;
+ int leaves;
+
+ /**
+ * Returned by earliestStart() if there is no start time.
+ */
+ public static final int NONE = Integer.MIN_VALUE;
+
+ public GapIndex(){
+ this.LST = new int[8];
+ this.EDT = new int[8];
+ this.size = 0;
+ this.version = -1;
+ this.build();
+ }
+
+ /**
+ * Replaces the appointments with the appointments of a book.
+ * @param appointments the appointments in LST order
+ * @param version the version of the appointments, see Terminal.version
+ */
+ public void rebuild(AppointmentBook appointments, int version){
+ this.size = 0;
+ for(int[] appointment : appointments.values()){
+ if(size == LST.length){
+ LST = Arrays.copyOf(LST, 2*size);
+ EDT = Arrays.copyOf(EDT, 2*size);
+ }
+ LST[size] = appointment[1];
+ EDT[size] = appointment[4];
+ size++;
+ }
+ this.version = version;
+ this.build();
+ }
+
+ /**
+ * @return the length of gap i, from the EDT of appointment i-1 to the LST of appointment i
+ */
+ int length(int i){
+ if(i == size){
+ return Integer.MAX_VALUE;
+ }
+ return LST[i] - EDT[i-1];
+ }
+
+ void build(){
+ leaves = 1;
+ while(leaves < size+1){
+ leaves *= 2;
+ }
+ tree = new int[2*leaves];
+ Arrays.fill(tree, Integer.MIN_VALUE);
+ for(int i=1; i<=size; i++){
+ tree[leaves+i] = this.length(i);
+ }
+ for(int node=leaves-1; node>=1; node--){
+ tree[node] = Math.max(tree[2*node], tree[2*node+1]);
+ }
+ }
+
+ /**
+ * The earliest start time from t on of a barge with handling time d that requested the waiting profile at currentTime.
+ * Like the waiting profile, gap 0 starts at currentTime and a later gap is only used if it starts at or after
+ * currentTime. The gaps that are used do not overlap and are sorted, because the EDT of an appointment is not before
+ * its LST.
+ * @param t the arrival time, t >= currentTime
+ * @param d the handling time
+ * @param currentTime the time of the request
+ * @return the earliest start time, or NONE if there is no gap from t on
+ */
+ public int earliestStart(int t, int d, int currentTime){
+ // the first gap that does not end before t: LST[i] - d >= t, the LST are sorted
+ int low = 0, high = size;
+ while(low < high){
+ int mid = (low + high) >>> 1;
+ if(LST[mid] - d >= t){
+ high = mid;
+ }
+ else{
+ low = mid+1;
+ }
+ }
+ int i = low;
+
+ // gap 0 is used from the current time
+ if(i == 0){
+ return t;
+ }
+ // gap i is only used if it starts at or after the current time and it is long enough
+ int start = EDT[i-1];
+ if(start >= currentTime && (i == size || start <= LST[i] - d)){
+ return Math.max(t, start);
+ }
+ if(i == size){
+ return NONE;
+ }
+ // a later gap starts after LST[i] >= t + d >= currentTime, the first gap that is long enough
+ int next = this.firstAtLeast(i+1, d);
+ return EDT[next-1];
+ }
+
+ /**
+ * @return the first gap from gap from on with length >= d. Gap size always qualifies.
+ */
+ int firstAtLeast(int from, int d){
+ return this.firstAtLeast(1, 0, leaves-1, from, d);
+ }
+
+ int firstAtLeast(int node, int nodeLow, int nodeHigh, int from, int d){
+ if(nodeHigh < from || tree[node] < d){
+ return -1;
+ }
+ if(nodeLow == nodeHigh){
+ return nodeLow;
+ }
+ int mid = (nodeLow + nodeHigh) >>> 1;
+ int left = this.firstAtLeast(2*node, nodeLow, mid, from, d);
+ if(left >= 0){
+ return left;
+ }
+ return this.firstAtLeast(2*node+1, mid+1, nodeHigh, from, d);
+ }
+ }
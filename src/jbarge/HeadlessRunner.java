@@ -0,0 +1,78 @@
+package jbarge;
+
+ /**
+ * Runs a simulation without the repast runtime, on an EventKernel. The Port, barges and terminals are the same as in
+ * the repast GUI, but the agents are not added to a repast context. The statistics are appended to the output
+ * spreadsheet at the end of the run, see Port.end().
+ */
+ public class HeadlessRunner {
+
+ /**
+ * Runs a simulation.
+ * @param sim the simulation run, with the parameters and policies set, see SimulationContext.setFixedParameters()
+ * @param dataFile the spreadsheet with the sailing times
+ * @return the event kernel after the run
+ */
+ public static EventKernel run(SimulationContext sim, String dataFile){
+ EventKernel kernel = new EventKernel(1024, sim.eventFusion);
+ sim.schedule = kernel;
+ try{
+ new Port().setup(sim, dataFile);
+ kernel.run();
+ }
+ finally{
+ // Port.end() shuts the pool down, unless the run failed
+ sim.shutdown();
+ }
+ return kernel;
+ }
+
+ /**
+ * Creates a simulation run with the parameters that can be configured in the repast GUI, the events and the details
+ * of the barges are not written to the output.
+ */
+ public static SimulationContext create(long seed, double arrivalRate, String terminalLogic, String model,
+ int slack, String slackMethod, int slackDenominator, String routeMethod){
+ SimulationContext sim = new SimulationContext();
+ sim.setFixedParameters();
+ sim.seed = seed;
+ sim.arrivalRate = arrivalRate;
+ sim.terminalLogic = terminalLogic;
+ sim.model = model;
+ sim.slack = slack;
+ sim.slackMethod = slackMethod;
+ sim.slackDenominator = slackDenominator;
+ sim.routeMethod = SimulationContext.checkRouteMethod(routeMethod);
+ sim.eventsToExcel = "No";
+ sim.bargesDetailsToExcel = "No";
+ sim.createPolicies();
+ return sim;
+ }
+
+ /**
+ * Usage: HeadlessRunner dataFile outputFile randomSeed arrivalRate terminalLogic model slack slackMethod slackDenominator
+ * routeMethod
+ */
+ public static void main(String[] args){
+ if(args.length != 10){
+ System.err.println("Usage: HeadlessRunner dataFile outputFile randomSeed arrivalRate terminalLogic model"
+ + " slack slackMethod slackDenominator routeMethod");
+ System.exit(1);
+ }
+ SimulationContext sim = create(Long.parseLong(args[2]), Double.parseDouble(args[3]), args[4], args[5],
+ Integer.parseInt(args[6]), args[7], Integer.parseInt(args[8]), args[9]);
+ sim.outputFile = args[1];
+
+ long start = System.nanoTime();
+ EventKernel kernel = run(sim, args[0]);
+ double seconds = (System.nanoTime() - start) / 1e9;
+ System.out.println(kernel.executed() + " events in " + seconds + " s, "
+ + (long) (kernel.executed() / seconds) + " events/s, " + kernel.fused() + " events fused");
+ if(sim.rotationCacheSize > 0){
+ int lookups = sim.stats.rotationCacheHits + sim.stats.rotationCacheMisses;
+ System.out.println("Rotation cache: " + sim.stats.rotationCacheHits + " hits of " + lookups + " lookups ("
+ + (lookups == 0 ? 0 : 100.0 * sim.stats.rotationCacheHits / lookups) + "%), "
+ + sim.stats.rotationCacheEvictions + " evictions");
+ }
+ }
+ }
@@ -0,0 +1,61 @@
+package jbarge;
+
+import repast.simphony.engine.environment.RunEnvironment;
+import repast.simphony.engine.schedule.IAction;
+import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.engine.schedule.ScheduleParameters;
+
+ /**
+ * Schedules the events in the repast ISchedule, which is used when the simulation runs in the repast GUI or in a
+ * repast batch run.
+ */
+ public class RepastScheduler implements EventScheduler {
+
+ ISchedule schedule;
+
+ /**
+ * @param schedule the schedule of the repast run, see RunEnvironment.getCurrentSchedule()
+ */
+ public RepastScheduler(ISchedule schedule){
+ this.schedule = schedule;
+ }
+
+ @Override
+ public double getTickCount(){
+ return schedule.getTickCount();
+ }
+
+ @Override
+ public void schedule(double time, double priority, ScheduledAction action){
+ schedule.schedule(parameters(time, priority), new Action(action));
+ }
+
+ @Override
+ public void endRun(){
+ RunEnvironment.getInstance().endRun();
+ }
+
+ static ScheduleParameters parameters(double time, double priority){
+ if(Double.isNaN(priority)){
+ return ScheduleParameters.createOneTime(time);
+ }
+ return ScheduleParameters.createOneTime(time, priority);
+ }
+
+ /**
+ * A scheduled action as repast action.
+ */
+ static class Action implements IAction{
+
+ ScheduledAction action;
+
+ Action(ScheduledAction action){
+ this.action = action;
+ }
+
+ @Override
+ public void execute(){
+ action.execute();
+ }
+ }
+ }
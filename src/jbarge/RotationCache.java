@@ -0,0 +1,250 @@
+package jbarge;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tdtsp.Rotation;
+import tdtsp.RouteSolver;
+import tdtsp.TravelTimes;
+
+ /**
+ * A least recently used cache of rotations, shared by all barges. Many barges visit the same set of
+ * terminals, and the appointment books of these terminals are often unchanged. A rotation is reused if
+ * the barge visits the same terminals with the same handling times and the terminals would send the
+ * same waiting profiles, in which case the route solver is not called.
+ * The key is the bitmask of the terminals (see Terminal.id), the handling times, a state of every
+ * appointment book and the start time:
+ * - a book is empty, or all its appointments are in the past (see isPast), then the waiting profile does
+ * not depend on the start time;
+ * - otherwise the key contains the version of the book (see Terminal.version) and the start time.
+ * If no book depends on the start time the leave time is stored relative to the start time, so the
+ * rotation is reused by barges that arrive at another time.
+ * The key does not depend on the order of the terminals of a barge, so for an exact route solver the
+ * reused rotation can be another optimal rotation than the rotation the solver would return.
+ * A reused rotation of a heuristic solver can be worse than the previous tour of a barge that computes its
+ * rotation again, then the previous tour is returned, see resolve().
+ */
+ public class RotationCache implements RouteSolver{
+
+ /**
+ * The start time in the key if no waiting profile depends on the start time.
+ */
+ static final int ANY_TIME = Integer.MIN_VALUE;
+
+ /**
+ * The states of an appointment book in the key, a version is stored as version + 2.
+ */
+ static final int EMPTY = 0;
+ static final int PAST = 1;
+
+ /**
+ * The simulation run, the hits, misses and evictions are counted in its statistics.
+ */
+ SimulationContext sim;
+
+ RouteSolver solver;
+
+ LinkedHashMap<Key, CachedRotation> rotations;
+
+ /**
+ * @param sim the simulation run
+ * @param solver the route solver that computes the rotations that are not in the cache
+ * @param capacity the maximum number of rotations in the cache
+ */
+ public RotationCache(SimulationContext sim, RouteSolver solver, final int capacity){
+ this.sim = sim;
+ this.solver = solver;
+ this.rotations = new LinkedHashMap<Key, CachedRotation>(16, 0.75f, true){
+ private static final long serialVersionUID = 1L;
+
+ @Override
+ protected boolean removeEldestEntry(Map.Entry<Key, CachedRotation> eldest){
+ if(size() > capacity){
+ sim.stats.rotationCacheEvictions++;
+ return true;
+ }
+ return false;
+ }
+ };
+ }
+
+ @Override
+ public Rotation solve(int startTime, Barge barge){
+ return this.resolve(startTime, barge, null);
+ }
+
+ @Override
+ public Rotation resolve(int startTime, Barge barge, int[] incumbent){
+ Key key = key(startTime, barge);
+ if(key == null){
+ return incumbent == null ? solver.solve(startTime, barge) : solver.resolve(startTime, barge, incumbent);
+ }
+
+ CachedRotation cached = rotations.get(key);
+ if(cached != null){
+ sim.stats.rotationCacheHits++;
+ Rotation rotation = cached.toRotation(startTime, barge);
+ return incumbent == null ? rotation : better(rotation, startTime, barge, incumbent);
+ }
+
+ sim.stats.rotationCacheMisses++;
+ Rotation rotation = incumbent == null ? solver.solve(startTime, barge) : solver.resolve(startTime, barge, incumbent);
+ rotations.put(key, new CachedRotation(rotation, startTime, barge));
+ return rotation;
+ }
+
+ /**
+ * Keeps the contract of RouteSolver.resolve() for a reused rotation: the result is at least as good as the
+ * previous tour.
+ * @return the reused rotation, or the previous tour if it leaves earlier, or at the same time with less sailing
+ */
+ static Rotation better(Rotation rotation, int startTime, Barge barge, int[] incumbent){
+ TravelTimes times = new TravelTimes(barge);
+ int n = times.numNodes;
+ int leaveTime = times.leaveTime(incumbent, n+1, startTime);
+ int sailingTime = times.sailingTime(incumbent, n+1);
+ if(leaveTime < rotation.bestLeaveTime || (leaveTime == rotation.bestLeaveTime && sailingTime < rotation.bestSailingTime)){
+ return new Rotation(barge, startTime, incumbent.clone(), leaveTime, sailingTime);
+ }
+ return rotation;
+ }
+
+ /**
+ * @return the key of the rotation of the barge, or null if the terminals do not fit in the bitmask
+ */
+ static Key key(int startTime, Barge barge){
+ int n = barge.terminals.size()-1;
+ long mask = 0;
+ int[] id = new int[n+1];
+ for(int node=1; node<=n; node++){
+ id[node] = barge.terminals.get(node).id;
+ if(id[node] < 0 || id[node] >= 64 || (mask & (1L << id[node])) != 0){
+ return null;
+ }
+ mask |= 1L << id[node];
+ }
+
+ // handling time and book state per terminal, in the order of the terminal index
+ int[] values = new int[2*n];
+ boolean anyTime = true;
+ int i = 0;
+ for(int terminal=0; terminal<64 && i<values.length; terminal++){
+ if((mask & (1L << terminal)) != 0){
+ int node = indexOf(id, terminal);
+ Terminal ter = barge.terminals.get(node);
+ int handlingTime = barge.handlingTimes.get(node);
+ values[i++] = handlingTime;
+ if(ter.appointments.isEmpty()){
+ values[i++] = EMPTY;
+ }
+ else if(isPast(ter, handlingTime, startTime)){
+ values[i++] = PAST;
+ }
+ else{
+ values[i++] = ter.version + 2;
+ anyTime = false;
+ }
+ }
+ }
+ return new Key(mask, values, anyTime ? ANY_TIME : startTime);
+ }
+
+ /**
+ * Checks whether all appointments in the book are in the past, such that the terminal sends an empty waiting
+ * profile for every start time from startTime on. This is the case if every appointment departs before the start
+ * time and the first appointment can not be preceded by the barge, see WaitingProfile.startIntervals().
+ */
+ static boolean isPast(Terminal terminal, int handlingTime, int startTime){
+ AppointmentSnapshot appointments = terminal.snapshot();
+ for(int i=0; i<appointments.size; i++){
+ if(appointments.EDT[i] >= startTime || (i == 0 && appointments.LST[i] - handlingTime >= startTime)){
+ return false;
+ }
+ }
+ return true;
+ }
+
+ static int indexOf(int[] id, int terminal){
+ for(int node=1; node<id.length; node++){
+ if(id[node] == terminal){
+ return node;
+ }
+ }
+ return -1;
+ }
+
+ static class Key{
+
+ long mask;
+ int[] values;
+ int startTime;
+ int hash;
+
+ Key(long mask, int[] values, int startTime){
+ this.mask = mask;
+ this.values = values;
+ this.startTime = startTime;
+ this.hash = 31 * (31 * (int) (mask ^ (mask >>> 32)) + Arrays.hashCode(values)) + startTime;
+ }
+
+ @Override
+ public int hashCode(){
+ return hash;
+ }
+
+ @Override
+ public boolean equals(Object o){
+ if(!(o instanceof Key)){
+ return false;
+ }
+ Key other = (Key) o;
+ return this.mask == other.mask && this.startTime == other.startTime && Arrays.equals(this.values, other.values);
+ }
+ }
+
+ /**
+ * A rotation in terminal indexes, with the leave time relative to the start time.
+ */
+ static class CachedRotation{
+
+ int[] terminals;
+ int sojournTime, sailingTime;
+ boolean optimal;
+ double gap;
+
+ CachedRotation(Rotation rotation, int startTime, Barge barge){
+ this.terminals = new int[rotation.tour.length];
+ for(int i=0; i<rotation.tour.length; i++){
+ this.terminals[i] = barge.terminals.get(rotation.tour[i]).id;
+ }
+ this.sojournTime = rotation.bestLeaveTime - startTime;
+ this.sailingTime = rotation.bestSailingTime;
+ this.optimal = rotation.optimal;
+ this.gap = rotation.gap;
+ }
+
+ Rotation toRotation(int startTime, Barge barge){
+ int[] tour = new int[terminals.length];
+ for(int i=0; i<terminals.length; i++){
+ tour[i] = nodeOf(barge, terminals[i]);
+ }
+ Rotation rotation = new Rotation(barge, startTime, tour, startTime + sojournTime, sailingTime);
+ rotation.optimal = optimal;
+ rotation.gap = gap;
+ return rotation;
+ }
+
+ /**
+ * @return the node of the barge of the terminal with the id, or -1
+ */
+ static int nodeOf(Barge barge, int id){
+ for(int node=0; node<barge.terminals.size(); node++){
+ if(barge.terminals.get(node).id == id){
+ return node;
+ }
+ }
+ return -1;
+ }
+ }
+ }
@@ -0,0 +1,122 @@
+package jbarge;
+
+ /**
+ * The route plan of a barge: the tour of its rotation with the sailing time of every leg and the
+ * appointment (LAT, LST) and handling time of every visit. The cursor is the position of the node the
+ * barge departed from last, it moves one node every time the barge finished handling at a terminal.
+ * Example of the nodes: {0, 1, 5, 9, 0}. The nodes are indexes in barge.terminals.
+ */
+ public class RoutePlan{
+
+ /**
+ * The nodes of the tour and their terminals.
+ */
+ public int[] nodes;
+ Terminal[] terminals;
+
+ /**
+ * sailingTimes[i] is the sailing time from nodes[i] to nodes[i+1].
+ */
+ int[] sailingTimes;
+
+ /**
+ * The latest arrival time, latest starting time and handling time of the visit of nodes[i].
+ */
+ int[] arrivalTimes, startTimes, handlingTimes;
+
+ /**
+ * The position in nodes of the node the barge departed from last.
+ */
+ int cursor;
+
+ /**
+ * Creates the plan of the tour, the appointments are set by setAppointment.
+ * @param barge the barge with its terminals, handling times and sailing times
+ * @param tour the tour, e.g., {0, 1, 5, 9, 0}
+ */
+ public RoutePlan(Barge barge, int[] tour){
+ int length = tour.length;
+ this.nodes = tour.clone();
+ this.terminals = new Terminal[length];
+ this.sailingTimes = new int[length];
+ this.arrivalTimes = new int[length];
+ this.startTimes = new int[length];
+ this.handlingTimes = new int[length];
+ for(int i=0; i<length; i++){
+ this.terminals[i] = barge.terminals.get(tour[i]);
+ this.handlingTimes[i] = barge.handlingTimes.get(tour[i]);
+ if(i+1 < length){
+ this.sailingTimes[i] = barge.sailingTimes[tour[i]][tour[i+1]];
+ }
+ }
+ this.cursor = 0;
+ }
+
+ /**
+ * Sets the appointment of the visit at position i.
+ */
+ void setAppointment(int i, int LAT, int LST){
+ this.arrivalTimes[i] = LAT;
+ this.startTimes[i] = LST;
+ }
+
+ /**
+ * @return the node the barge departed from last
+ */
+ public int origin(){
+ return nodes[cursor];
+ }
+
+ /**
+ * @return the node the barge sails to
+ */
+ public int destination(){
+ return nodes[cursor+1];
+ }
+
+ /**
+ * @return the terminal the barge sails to
+ */
+ public Terminal destinationTerminal(){
+ return terminals[cursor+1];
+ }
+
+ /**
+ * @return the planned sailing time from the origin to the destination
+ */
+ public int sailingTime(){
+ return sailingTimes[cursor];
+ }
+
+ /**
+ * @return true if the barge visits another terminal before it sails to the port exit
+ */
+ public boolean hasNextTerminal(){
+ return nodes.length - cursor > 2;
+ }
+
+ /**
+ * Moves the cursor to the next node, after the barge finished handling at the destination.
+ * The cursor does not move past the last terminal.
+ */
+ public void next(){
+ if(this.hasNextTerminal()){
+ cursor++;
+ }
+ }
+
+ /**
+ * @return the number of terminals the barge still has to visit, including the destination
+ */
+ public int remaining(){
+ return nodes.length - cursor - 2;
+ }
+
+ /**
+ * @param i 0 for the destination, 1 for the terminal after the destination, etc.
+ * @return the node of the i-th terminal the barge still has to visit
+ */
+ public int remainingNode(int i){
+ return nodes[cursor+1+i];
+ }
+ }
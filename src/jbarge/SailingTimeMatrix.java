@@ -0,0 +1,203 @@
+package jbarge;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+ /**
+ * The sailing times between all terminals in the port, stored row by row in one array. The rows and columns are the
+ * ids of the terminals, see Terminal.id, so the port entrance is row 0.
+ * The matrix can be stored in a binary file next to the workbook it was read from, such that a scenario does not
+ * parse the workbook again: a header with MAGIC, FORMAT, the size and the checksum of the workbook and sheet
+ * (see checksum()), followed by the sailing times as int32, row by row. The file is ignored if the checksum does
+ * not match, e.g., after the workbook changed. The file is read with plain channel reads, not memory mapped, because
+ * a mapping stays alive until it is garbage collected and on Windows blocks the replace in writeBinary().
+ */
+ public class SailingTimeMatrix {
+
+ static final int MAGIC = 0x4A425354;
+ static final int FORMAT = 1;
+
+ /**
+ * The length of the header in bytes: magic, format, size and checksum.
+ */
+ static final int HEADER = 4 + 4 + 4 + 8;
+
+ /**
+ * The number of rows and columns.
+ */
+ final int size;
+
+ /**
+ * times[from*size + to] is the sailing time from terminal from to terminal to.
+ */
+ final int[] times;
+
+ /**
+ * @param table the sailing times, table[from][to]
+ */
+ public SailingTimeMatrix(int[][] table){
+ this.size = table.length;
+ this.times = new int[size*size];
+ for(int i=0; i<size; i++){
+ System.arraycopy(table[i], 0, this.times, i*size, size);
+ }
+ }
+
+ SailingTimeMatrix(int size, int[] times){
+ this.size = size;
+ this.times = times;
+ }
+
+ /**
+ * @return the sailing time from terminal from to terminal to
+ */
+ public int get(int from, int to){
+ return times[from*size + to];
+ }
+
+ public int size(){
+ return size;
+ }
+
+ /**
+ * Creates the sailing times between the terminals a barge has to visit, which is used as input for the TDTSP.
+ * @param ids the ids of the terminals, ids[i] is the terminal of node i
+ * @return the sailing times between the nodes
+ */
+ public int[][] subMatrix(int[] ids){
+ int n = ids.length;
+ int[][] sailingTimes = new int[n][n];
+ for(int i=0; i<n; i++){
+ int row = ids[i]*size;
+ for(int j=0; j<n; j++){
+ sailingTimes[i][j] = times[row + ids[j]];
+ }
+ }
+ return sailingTimes;
+ }
+
+ /**
+ * The checksum of a sheet of a workbook, the CRC32 of the workbook file and the name of the sheet.
+ * @param workbook the workbook file
+ * @param sheetName the name of the sheet
+ * @return the checksum
+ * @throws IOException if the workbook can not be read
+ */
+ public static long checksum(File workbook, String sheetName) throws IOException{
+ CRC32 crc = new CRC32();
+ byte[] buffer = new byte[8192];
+ InputStream in = new FileInputStream(workbook);
+ try{
+ int n;
+ while((n = in.read(buffer)) > 0){
+ crc.update(buffer, 0, n);
+ }
+ }
+ finally{
+ in.close();
+ }
+ crc.update(sheetName.getBytes("UTF-8"));
+ return crc.getValue();
+ }
+
+ /**
+ * Reads a matrix from a binary file.
+ * @param file the binary file
+ * @param checksum the checksum of the sheet the matrix must be read from
+ * @return the matrix, or null if the file does not exist or is not a matrix of the sheet
+ * @throws IOException if the file can not be read
+ */
+ public static SailingTimeMatrix readBinary(File file, long checksum) throws IOException{
+ if(!file.isFile()){
+ return null;
+ }
+ FileInputStream in = new FileInputStream(file);
+ try{
+ FileChannel channel = in.getChannel();
+ long length = channel.size();
+ if(length < HEADER){
+ return null;
+ }
+
+ // validate the header before the payload is read
+ ByteBuffer header = ByteBuffer.allocate(HEADER);
+ readFully(channel, header);
+ if(header.getInt() != MAGIC || header.getInt() != FORMAT){
+ return null;
+ }
+ int size = header.getInt();
+ if(header.getLong() != checksum || size < 0 || length != HEADER + 4L*size*size){
+ return null;
+ }
+
+ ByteBuffer payload = ByteBuffer.allocate(4*size*size);
+ readFully(channel, payload);
+ int[] times = new int[size*size];
+ payload.asIntBuffer().get(times);
+ return new SailingTimeMatrix(size, times);
+ }
+ finally{
+ in.close();
+ }
+ }
+
+ /**
+ * Reads from the channel until the buffer is full and flips the buffer.
+ * @throws IOException if the channel ends before the buffer is full
+ */
+ static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+ while(buffer.hasRemaining()){
+ if(channel.read(buffer) < 0){
+ throw new IOException("Unexpected end of file");
+ }
+ }
+ buffer.flip();
+ }
+
+ /**
+ * Writes the matrix to a binary file. The file is written to a temporary file first and then replaces the file,
+ * so that a simulation that reads the file at the same time does not see a partial matrix.
+ * @param file the binary file
+ * @param checksum the checksum of the sheet the matrix was read from
+ * @throws IOException if the file can not be written
+ */
+ public void writeBinary(File file, long checksum) throws IOException{
+ ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4*times.length);
+ buffer.putInt(MAGIC).putInt(FORMAT).putInt(size).putLong(checksum);
+ buffer.asIntBuffer().put(times);
+ buffer.rewind();
+
+ File directory = file.getAbsoluteFile().getParentFile();
+ File temp = File.createTempFile(file.getName(), ".tmp", directory);
+ try{
+ FileOutputStream out = new FileOutputStream(temp);
+ try{
+ FileChannel channel = out.getChannel();
+ while(buffer.hasRemaining()){
+ channel.write(buffer);
+ }
+ }
+ finally{
+ out.close();
+ }
+ try{
+ Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+ }
+ catch(AtomicMoveNotSupportedException e){
+ Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+ }
+ }
+ finally{
+ temp.delete();
+ }
+ }
+ }
@@ -0,0 +1,15 @@
+package jbarge;
+
+ /**
+ * An event of a simulation run, scheduled at an EventScheduler. The events of the agents are typed actions that
+ * call the method of the agent directly, e.g., Terminal.HandleBarge. The interface does not depend on repast, so a
+ * headless run on an EventKernel does not need the repast runtime; RepastScheduler wraps an action in a repast
+ * IAction.
+ */
+ public interface ScheduledAction {
+
+ /**
+ * Executes the event.
+ */
+ void execute();
+ }
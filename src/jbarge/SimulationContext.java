@@ -0,0 +1,430 @@
+package jbarge;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.random.RandomDataGenerator;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import repast.simphony.context.Context;
+import repast.simphony.parameter.Parameters;
+import tdtsp.AnytimeSolver;
+import tdtsp.ExactSolver;
+import tdtsp.HeuristicSolver;
+import tdtsp.RouteSolver;
+import tdtsp.TDTSP;
+
+/**
+ * The state of one simulation run: the schedule, the parameters, the random data generators, the terminals, the
+ * sailing times and the statistics. The Port creates a context for every run and passes it to the agents, which
+ * keep a reference to it, so that runs in the same JVM do not share state.
+ */
+public class SimulationContext {
+
+	/**
+	* The scheduler manages the execution of events according to the simulation clock: the repast schedule
+	* in the repast GUI, or an EventKernel in a headless run.
+	*/
+	public EventScheduler schedule;
+
+	/**
+	* The repast context that contains the agents, null in a headless run.
+	*/
+	public Context<Object> context;
+
+	/**
+	* The spreadsheet to which the statistics are appended, see Statistics.toExcel().
+	*/
+	public String outputFile;
+
+	/**
+	* The sailing times between the terminals, the rows and columns are the ids of the terminals.
+	*/
+	public SailingTimeMatrix sailingTimes;
+
+	/**
+	* The Terminal objects are stored in this ArrayList.
+	*/
+	public ArrayList<Terminal> terminals;
+
+	/**
+	* The String parameters.Model stands for stochastic or deterministic sailing and handling times.
+	*/
+	public String sheetName, model, terminalLogic, slackMethod, eventsToExcel, bargesDetailsToExcel;
+
+	/**
+	* The policies that are resolved from the terminalLogic, model and eventsToExcel parameters.
+	*/
+	public TerminalDispatchPolicy dispatchPolicy;
+	public DurationModel durationModel;
+	public EventSink eventSink;
+
+	/**
+	* The method used by the barges to compute their rotation: "Enumeration", "DynamicProgram", "BranchAndBound"
+	* and "Parallel" solve the TDTSP exactly, "NearestNeighbour" and "Insertion" are heuristics for barges
+	* that visit many terminals. "Anytime" searches within the budget anytimeMaxNodes and anytimeMaxMillis.
+	* It is the parameter routeMethod of the GUI, see ROUTE_METHODS.
+	*/
+	public String routeMethod;
+
+	/**
+	 * The valid values of routeMethod.
+	 */
+	public static final String[] ROUTE_METHODS = {"Enumeration", "DynamicProgram", "BranchAndBound", "Parallel",
+		"NearestNeighbour", "Insertion", "Anytime"};
+
+	/**
+	* The route solver that is created for the routeMethod.
+	*/
+	public RouteSolver routeSolver;
+
+	/**
+	* The RandomDataGenerators. The handling times are drawn from numTerminalRNG, as in the original model.
+	*/
+	public RandomDataGenerator arrivalRNG, numTerminalRNG, timeRNG;
+
+	/**
+	* The random data seed parameter.
+	*/
+	public long seed;
+
+	/**
+	 * The Integer parameters.
+	 */
+	public int timeSigma, slack, slackDenominator, numNodes;
+
+	/**
+	 * The maximum number of terminals a barge visits, and the maximum number of terminals for which
+	 * a heuristic route solver also computes the exact rotation to report the optimality gap.
+	 * The gap is a diagnostic: it solves every rotation twice, so it is 0 (off) by default.
+	 */
+	public int maxTerminalsToVisit, gapMaxNodes;
+
+	/**
+	 * The configuration of the Parallel route method: the number of worker threads, the number of levels of
+	 * the search tree that are split into tasks and the least number of nodes for which the search is split.
+	 * The number of accepted tours the Enumeration route method keeps, 0 keeps only the best tour. See TDTSP.
+	 */
+	public int parallelism, splitDepth, parallelMinNodes, acceptedLimit;
+
+	/**
+	 * The fork-join pool of the Parallel route method, with parallelism workers. It belongs to this run and is
+	 * shut down at the end of the run, see shutdown(). Null for the other route methods.
+	 */
+	public ForkJoinPool pool;
+
+	/**
+	 * The budget of the anytime route solver: the maximum number of search nodes and the maximum
+	 * computation time in milliseconds per rotation. 0 means no limit.
+	 */
+	public long anytimeMaxNodes, anytimeMaxMillis;
+
+	/**
+	 * The maximum number of rotations in the rotation cache, 0 to compute every rotation with the route solver.
+	 * The cache is off by default: the handling times are drawn per barge, so the key rarely repeats and the headless
+	 * runs recorded no hits. HeadlessRunner reports the hit rate when the cache is on.
+	 */
+	public int rotationCacheSize;
+
+	/**
+	 * The maximum number of ended visits of barges at terminals that are kept for reuse, 0 to allocate every visit.
+	 */
+	public int visitPoolSize;
+	public VisitPool visitPool;
+
+	/**
+	 * Whether the EventKernel of a headless run executes the events that an event schedules at the current time
+	 * without the heap, see EventKernel.fused.
+	 */
+	public boolean eventFusion;
+
+	/**
+	 * Whether the random data generators are seeded with the seed parameter. Repast runs use fixed seeds, see
+	 * setupRandomgenerators(), a BatchRunner seeds the generators so that the replications of a configuration differ.
+	 * The seed of every generator is mixed from the seed parameter and the fixed seed of the generator, see
+	 * mixSeed(), so the generators of different seeds do not produce shifted copies of each other.
+	 */
+	public boolean seedGenerators;
+
+	/**
+	 * Whether Port.end() appends the statistics to the output spreadsheet. A BatchRunner appends the statistics
+	 * of its runs itself, in the order of the configurations.
+	 */
+	public boolean outputAtEnd = true;
+
+	/**
+	 * The Double parameters.
+	 */
+	public double endTime, warmup, arrivalRate, numTerminalMean, numTerminalStd, handlingTimeMean, handlingTimeStd;
+
+	/**
+	 * The Statistics object that manages the statistics.
+	 */
+	public Statistics stats;
+
+	/**
+	 * The number of the scenario, see Port.scenarioCount.
+	 */
+	public int scenario;
+
+	/**
+	 * Reads in all the parameters and initializes the corresponding objects.
+	 * Note that the parameters that require configuration from that GUI was changed,
+	 * therefore there are some fixed parameters, see setFixedParameters().
+	 * @param params the parameters of the run
+	 */
+	public void readParameters(Parameters params){
+		setFixedParameters();
+		seed = params.getInteger("randomSeed");
+		arrivalRate = params.getDouble("arrivalRate");
+		eventsToExcel = params.getString("eventsToExcel");
+		bargesDetailsToExcel = params.getString("bargesDetailsToExcel");
+		model = params.getString("model");
+		terminalLogic = params.getString("terminalLogic");
+		slack = params.getInteger("slack");
+		slackMethod = params.getString("slackMethod");
+		slackDenominator = params.getInteger("slackDenominator");
+		routeMethod = checkRouteMethod(params.getString("routeMethod"));
+		createPolicies();
+	}
+
+	/**
+	 * Sets the parameters that can not be configured in the GUI. A headless run sets these first, then the
+	 * GUI parameters, and then calls createPolicies().
+	 */
+	public void setFixedParameters(){
+		sheetName = "14 terminals";
+		warmup = 1440;
+		//endTime = 10000;
+		//endTime = 17280;
+		//endTime = 65118;
+		endTime=65120;
+		numTerminalMean = 5;
+		numTerminalStd = 1;
+		handlingTimeMean = 30;
+		handlingTimeStd = 10;
+		timeSigma = 3;
+		maxTerminalsToVisit = 8;
+		routeMethod = "BranchAndBound";
+		gapMaxNodes = 0;
+		anytimeMaxNodes = 0;
+		anytimeMaxMillis = 50;
+		parallelism = Runtime.getRuntime().availableProcessors();
+		splitDepth = 2;
+		parallelMinNodes = 6;
+		acceptedLimit = 0;
+		rotationCacheSize = 0;
+		visitPoolSize = 256;
+		eventFusion = true;
+	}
+
+	/**
+	 * Creates the policies, the route solver and the visit pool from the parameters.
+	 */
+	public void createPolicies(){
+		shutdown();
+		visitPool = new VisitPool(visitPoolSize);
+		dispatchPolicy = TerminalDispatchPolicy.create(terminalLogic);
+		durationModel = DurationModel.create(this);
+		eventSink = EventSink.create(this);
+		routeSolver = createRouteSolver(routeMethod);
+		if(rotationCacheSize > 0){
+			routeSolver = new RotationCache(this, routeSolver, rotationCacheSize);
+		}
+	}
+
+	/**
+	 * Shuts down the fork-join pool of the run, if any. Called at the end of the run, see Port.end().
+	 */
+	public void shutdown(){
+		if(pool != null){
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Checks a route method when it is read from the parameters, a configuration or the command line.
+	 * @param method the route method
+	 * @return the route method
+	 * @throws IllegalArgumentException if the method is not one of ROUTE_METHODS
+	 */
+	public static String checkRouteMethod(String method){
+		for(String m : ROUTE_METHODS){
+			if(m.equals(method)){
+				return method;
+			}
+		}
+		throw new IllegalArgumentException("Unknown route method: " + method + ", expected one of "
+				+ Arrays.toString(ROUTE_METHODS));
+	}
+
+	/**
+	 * Creates the route solver for a route method.
+	 * @param method the route method, see routeMethod
+	 * @return the route solver
+	 */
+	public RouteSolver createRouteSolver(String method){
+		if(method.equals("Enumeration")){
+			return new ExactSolver(TDTSP.ENUMERATION, null, 0, 0, acceptedLimit);
+		}
+		else if(method.equals("DynamicProgram")){
+			return new ExactSolver(TDTSP.DYNAMIC_PROGRAM);
+		}
+		else if(method.equals("BranchAndBound")){
+			return new ExactSolver(TDTSP.BRANCH_AND_BOUND);
+		}
+		else if(method.equals("Parallel")){
+			pool = new ForkJoinPool(Math.max(1, parallelism));
+			return new ExactSolver(TDTSP.PARALLEL, pool, splitDepth, parallelMinNodes, 0);
+		}
+		else if(method.equals("NearestNeighbour")){
+			return new HeuristicSolver(HeuristicSolver.NEAREST_NEIGHBOUR, gapMaxNodes);
+		}
+		else if(method.equals("Insertion")){
+			return new HeuristicSolver(HeuristicSolver.INSERTION, gapMaxNodes);
+		}
+		else if(method.equals("Anytime")){
+			return new AnytimeSolver(anytimeMaxNodes, anytimeMaxMillis);
+		}
+		throw new IllegalArgumentException("Unknown route method: " + method);
+	}
+
+	/**
+	 * Setup the random data generators, see seedGenerators.
+	 */
+	public void setupRandomgenerators(){
+		arrivalRNG = new RandomDataGenerator();
+		numTerminalRNG = new RandomDataGenerator();
+		timeRNG = new RandomDataGenerator();
+		arrivalRNG.reSeed(seedOf(1206271786));
+		numTerminalRNG.reSeed(seedOf(1209361928));
+		timeRNG.reSeed(seedOf(1209351537));
+	}
+
+	/**
+	 * @param stream the fixed seed of a generator
+	 * @return the fixed seed, or the seed mixed with the seed parameter if seedGenerators is set
+	 */
+	long seedOf(long stream){
+		return seedGenerators ? mixSeed(seed, stream) : stream;
+	}
+
+	/**
+	 * Mixes a seed and the fixed seed of a generator with the SplitMix64 finalizer. Adding the seed to the fixed
+	 * seeds would give overlapping generators: fixed seeds that differ by d give the same generator for seeds
+	 * that differ by d.
+	 */
+	static long mixSeed(long seed, long stream){
+		return mix64(mix64(seed) + stream);
+	}
+
+	static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Create terminal object/agents.
+	 * The number of rows in sailing times is equal to the number of terminals.
+	 * (Note: the port entrance is seen terminal object)
+	 */
+	public void createTerminals(){
+		numNodes=15;
+		terminals = new ArrayList<Terminal>();
+		for(int i=0; i<numNodes; i++){
+			terminals.add(new Terminal(this, i, "t"+i));
+		}
+	}
+
+	/**
+	 * Put the sailing times from the spreadsheet into a SailingTimeMatrix. The matrix is used by a
+	 * barge to construct a smaller sailing times array with only the relevant terminals. The barge
+	 * will use the smaller version of the table as input for the TDTSP.
+	 * The matrix is stored in a binary file next to the spreadsheet, which is read instead of the
+	 * spreadsheet as long as the checksum of the spreadsheet and sheet matches, see SailingTimeMatrix.
+	 * @param filePath the file path of the spreadsheet
+	 */
+	public void readSailingTimes(String filePath) {
+		File binaryFile = new File(filePath + "." + sheetName.replaceAll("[^A-Za-z0-9]", "_") + ".bin");
+
+		// read the binary file if it was created from the same spreadsheet and sheet
+		long checksum = 0;
+		boolean checked = false;
+		try {
+			checksum = SailingTimeMatrix.checksum(new File(filePath), sheetName);
+			checked = true;
+			sailingTimes = SailingTimeMatrix.readBinary(binaryFile, checksum);
+			if(sailingTimes != null){
+				return;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		sailingTimes = new SailingTimeMatrix(readSailingTimesSheet(filePath));
+
+		// store the binary file for the next scenario
+		if(checked){
+			try {
+				sailingTimes.writeBinary(binaryFile, checksum);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Reads the sailing times from the sheet sheetName of the spreadsheet.
+	 * @param filePath the file path of the spreadsheet
+	 * @return the sailing times, table[from][to]
+	 */
+	int[][] readSailingTimesSheet(String filePath) {
+
+		int[][] table=null;
+		try {
+			FileInputStream file = new FileInputStream(new File(filePath));
+
+			// get the file
+			Workbook workbook = new XSSFWorkbook(file);
+
+			// get the sheet
+			Sheet sheet = workbook.getSheet(sheetName);
+
+			// create iterator
+			Iterator<Row> rowIterator = sheet.iterator();
+
+			// create an array to store the content. the array will later be converted to a SailingTimeMatrix
+			int noOfColumns = sheet.getRow(0).getPhysicalNumberOfCells();
+			table = new int[noOfColumns][noOfColumns];
+
+			// store the content in the array
+			for(int i = 0; i<noOfColumns; i++){
+				Row row = rowIterator.next();
+				Iterator<Cell> cellIterator = row.cellIterator();
+				for (int j = 0; j<noOfColumns; j++){
+					Double cell = cellIterator.next().getNumericCellValue();
+					table[i][j]= cell.intValue();
+				}
+			}
+			file.close();
+
+		} catch (FileNotFoundException e1) {
+			e1.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return table;
+	}
+}
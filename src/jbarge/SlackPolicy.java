@@ -0,0 +1,87 @@
+package jbarge;
+
+ /**
+ * The slack that a waiting profile adds to the maximum waiting time. The slack method, slack and slack denominator
+ * are parameters which can be configured in the repast GUI. The policy is resolved once when the waiting profile is
+ * constructed, so that looking up a waiting time does not compare Strings or read the appointments of the terminal.
+ */
+ public abstract class SlackPolicy {
+
+ /**
+ * @param mwt the maximum waiting time without slack
+ * @return the maximum waiting time with slack
+ */
+ public abstract int apply(int mwt);
+
+ /**
+ * Whether the waiting profile with this slack satisfies the FIFO property: arriving later never means that the
+ * handling ends earlier. The maximum waiting time without slack decreases by one for every later arrival, up to
+ * the next start interval, so this holds if the slack does not grow with the maximum waiting time.
+ * @return true if the slack keeps the FIFO property
+ */
+ public boolean isFifo(){
+ return true;
+ }
+
+ /**
+ * Creates the slack policy of the slack method of the simulation run, see SimulationContext.slackMethod.
+ * "Constant" adds slack, "Factor" adds (number of appointments / slackDenominator) * mwt,
+ * where the number of appointments is the number at the time the waiting profile is constructed.
+ * With any other method the waiting time is 0.
+ * @param terminal the terminal that constructs the waiting profile
+ * @return the slack policy
+ */
+ public static SlackPolicy create(Terminal terminal){
+ if(terminal.sim.slackMethod.equals("Constant")){
+ return new Constant(terminal.sim.slack);
+ }
+ else if(terminal.sim.slackMethod.equals("Factor")){
+ return new Factor(terminal.appointments.size() / terminal.sim.slackDenominator);
+ }
+ return new None();
+ }
+
+ static class Constant extends SlackPolicy{
+
+ int slack;
+
+ Constant(int slack){
+ this.slack = slack;
+ }
+
+ @Override
+ public int apply(int mwt){
+ return mwt + slack;
+ }
+ }
+
+ static class Factor extends SlackPolicy{
+
+ int factor;
+
+ Factor(int factor){
+ this.factor = factor;
+ }
+
+ @Override
+ public int apply(int mwt){
+ return mwt + factor * mwt;
+ }
+
+ /**
+ * An arrival one minute later waits (1 + factor) minutes less, so it is handled earlier if the factor is not 0.
+ */
+ @Override
+ public boolean isFifo(){
+ return factor == 0;
+ }
+ }
+
+ static class None extends SlackPolicy{
+
+ @Override
+ public int apply(int mwt){
+ return 0;
+ }
+ }
+ }
@@ -15,7 +15,7 @@ package jbarge;
  import org.apache.poi.ss.usermodel.Workbook;
  import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
-import repast.simphony.engine.environment.RunEnvironment;
+import tdtsp.Rotation;
 
  /**
  * Manages the statistics.
@@ -33,10 +33,45 @@ import repast.simphony.engine.environment.RunEnvironment;
  */
  public DescriptiveStatistics[] descriptiveStatistics;
 
+ /**
+ * The optimality gaps of the rotations computed by a heuristic route solver, see Rotation.gap.
+ */
+ public DescriptiveStatistics optimalityGap;
+
+ /**
+ * The number of search nodes the route solver examined per rotation, see Rotation.nodesExpanded.
+ */
+ public DescriptiveStatistics nodesExpanded;
+
+ /**
+ * The number of rotations computed and the number of rotations that were proven optimal.
+ * A rotation of the anytime route solver is not proven optimal if the budget stopped the search.
+ */
+ public int rotations, rotationsProvenOptimal;
+
+ /**
+ * The hits, misses and evictions of the rotation cache, see RotationCache.
+ */
+ public int rotationCacheHits, rotationCacheMisses, rotationCacheEvictions;
+
+ /**
+ * The visits of barges at terminals, see Visit: the waiting time from the arrival until the start of the handling
+ * of the handled visits, the number of visits that arrived after their latest arrival time and the number of
+ * visits that were rejected.
+ */
+ public DescriptiveStatistics visitWaitingTime;
+ public int lateVisits, rejectedVisits;
+
  public ArrayList<Object[]> singleBargeinfo, events;
 
 
- public Statistics(){
+ /**
+ * The simulation run of the statistics, its parameters are written to the output.
+ */
+ SimulationContext sim;
+
+ public Statistics(SimulationContext sim){
+ this.sim = sim;
 
 
  bargesEnteredPort=0;
@@ -49,6 +84,9 @@ import repast.simphony.engine.environment.RunEnvironment;
  for(int i = 0; i<5; i++){
  descriptiveStatistics[i]= new DescriptiveStatistics();
  }
+ optimalityGap = new DescriptiveStatistics();
+ nodesExpanded = new DescriptiveStatistics();
+ visitWaitingTime = new DescriptiveStatistics();
 
  singleBargeinfo = new ArrayList<Object[]>();
  events = new ArrayList<Object[]>();
@@ -84,7 +122,7 @@ import repast.simphony.engine.environment.RunEnvironment;
  String wprofiles="";
  for(int i=1; i<barge.terminals.size(); i++){
  Terminal t = barge.terminals.get(i);
- WaitingProfile wp = barge.waitingProfiles.get(t);
+ WaitingProfile wp = barge.waitingProfiles[i];
  wprofiles += "Waiting Profile of " + t.toString()+ "\n"+ wp.toString() + "\n";
  wprofiles += "Start invervals of " + t.toString()+ "\n" + wp.startIntervalsToString() + "\n";
  }
@@ -99,13 +137,13 @@ import repast.simphony.engine.environment.RunEnvironment;
 
 
  Object[] bargeInfo = new Object[]{
- Port.scenarioCount,
+ sim.scenario,
  barge.bargeNumber,
  barge.arrivalTime,
  barge.terminals.size()-1,
  terminalsToVisit,
  handlingtimes,
- barge.tdtsp.bestRouteToString(),
+ barge.rotation.bestRouteToString(),
  //wprofiles,
  //sailingTimes,
  //barge.appointmentsToString(),
@@ -125,15 +163,145 @@ import repast.simphony.engine.environment.RunEnvironment;
  }
 
 
+ /**
+ * Appends the statistics to the output spreadsheet. Runs in the same JVM write one at a time, because they
+ * share the spreadsheet.
+ */
  public void toExcel(){
- String filePath;
- if(RunEnvironment.getInstance().isBatch()==true){
- filePath = "C:/jbarges/output.xlsx";
+ this.summary().toExcel();
  }
- else{
- filePath = "output/output.xlsx";
+
+ /**
+ * @return the rows of this run for the output spreadsheet
+ */
+ public Summary summary(){
+
+ //count satisfaction levels. satisfaction rating 1 is located at index 0, rating 2 is located at index 1, etc.
+ int infoSatisfaction[] = new int[]{0,0,0,0,0,0,0};
+ int waitSatisfaction[] = new int[]{0,0,0,0,0,0,0};
+ for(Object[] o : this.singleBargeinfo){
+ //the information satisfaction rating is located at index 14, waiting time satisfaction rating at index 15
+ int info = (Integer) o[14];
+ int wait = (Integer) o[15];
+ infoSatisfaction[info-1]++;
+ waitSatisfaction[wait-1]++;
+ }
+
+ // this array is used to fill the row
+ Object[] rowContent = new Object[]{
+ new Date(System.currentTimeMillis()),
+ sim.seed,
+ sim.terminalLogic,
+ sim.model,
+ //sim.endTime,
+ //sim.warmup,
+ //sim.timeSigma,
+ sim.slackMethod,
+
+ sim.slack,
+
+ sim.slackDenominator,
+
+ //sim.numTerminalMean,
+ //sim.numTerminalStd,
+ //sim.handlingTimeMean,
+ //sim.handlingTimeStd,
+ sim.arrivalRate,
+
+ this.bargesEnteredPort,
+ this.bargesLeftPort,
+ this.bargesInPortafterWarmup,
+
+ Precision.round(this.descriptiveStatistics[0].getMean(),0),
+ Precision.round(this.descriptiveStatistics[0].getStandardDeviation(),0),
+ Precision.round(this.descriptiveStatistics[0].getMin(),0),
+ Precision.round(this.descriptiveStatistics[0].getMax(),0),
+
+ Precision.round(this.descriptiveStatistics[1].getMean(),0),
+ Precision.round(this.descriptiveStatistics[1].getStandardDeviation(),0),
+ Precision.round(this.descriptiveStatistics[1].getMin(),0),
+ Precision.round(this.descriptiveStatistics[1].getMax(),0),
+
+ Precision.round(this.descriptiveStatistics[2].getMean(),0),
+ Precision.round(this.descriptiveStatistics[2].getStandardDeviation(),0),
+ Precision.round(this.descriptiveStatistics[2].getMin(),0),
+ Precision.round(this.descriptiveStatistics[2].getMax(),0),
+
+ Precision.round(this.descriptiveStatistics[3].getMean(),0),
+ Precision.round(this.descriptiveStatistics[3].getStandardDeviation(),0),
+ Precision.round(this.descriptiveStatistics[3].getMin(),0),
+ Precision.round(this.descriptiveStatistics[3].getMax(),0),
+
+ Precision.round(this.descriptiveStatistics[4].getMean(),0),
+ Precision.round(this.descriptiveStatistics[4].getStandardDeviation(),0),
+ Precision.round(this.descriptiveStatistics[4].getMin(),0),
+ Precision.round(this.descriptiveStatistics[4].getMax(),0),
+
+ infoSatisfaction[0],
+ infoSatisfaction[1],
+ infoSatisfaction[2],
+ infoSatisfaction[3],
+ infoSatisfaction[4],
+ infoSatisfaction[5],
+ infoSatisfaction[6],
+
+ waitSatisfaction[0],
+ waitSatisfaction[1],
+ waitSatisfaction[2],
+ waitSatisfaction[3],
+ waitSatisfaction[4],
+ waitSatisfaction[5],
+ waitSatisfaction[6],
+
+ sim.routeMethod,
+ this.optimalityGap.getN() > 0 ? Precision.round(this.optimalityGap.getMean(),4) : "-",
+ this.optimalityGap.getN() > 0 ? Precision.round(this.optimalityGap.getMax(),4) : "-",
+ this.rotations,
+ this.rotationsProvenOptimal,
+ this.nodesExpanded.getN() > 0 ? Precision.round(this.nodesExpanded.getMean(),0) : "-",
+ this.nodesExpanded.getN() > 0 ? Precision.round(this.nodesExpanded.getMax(),0) : "-",
+ this.rotationCacheHits,
+ this.rotationCacheMisses,
+ this.rotationCacheEvictions,
+ this.visitWaitingTime.getN() > 0 ? Precision.round(this.visitWaitingTime.getMean(),0) : "-",
+ this.visitWaitingTime.getN() > 0 ? Precision.round(this.visitWaitingTime.getMax(),0) : "-",
+ this.lateVisits,
+ this.rejectedVisits
+ };
+ return new Summary(sim.outputFile, rowContent, singleBargeinfo, events);
  }
 
+ /**
+ * The rows of a run for the output spreadsheet: the row of the run on the first sheet and the rows of the barges
+ * and the events. A summary does not keep the simulation run, so the run can be released before the rows are
+ * written, see BatchRunner.
+ */
+ public static class Summary{
+
+ String outputFile;
+ Object[] row;
+ ArrayList<Object[]> singleBargeinfo, events;
+
+ Summary(String outputFile, Object[] row, ArrayList<Object[]> singleBargeinfo, ArrayList<Object[]> events){
+ this.outputFile = outputFile;
+ this.row = row;
+ this.singleBargeinfo = singleBargeinfo;
+ this.events = events;
+ }
+
+ /**
+ * Appends the rows to the output spreadsheet, see Statistics.toExcel().
+ */
+ public void toExcel(){
+ synchronized(Statistics.class){
+ writeExcel(outputFile, row, singleBargeinfo, events);
+ }
+ }
+ }
+
+ static void writeExcel(String filePath, Object[] rowContent, ArrayList<Object[]> singleBargeinfo,
+ ArrayList<Object[]> events){
+
 
  try {
 
@@ -205,7 +373,22 @@ import repast.simphony.engine.environment.RunEnvironment;
  "# Neither satisfied or dissatisfied with waiting time",
  "# Somewhat satisfied with waiting time",
  "# Mostly satisfied with waiting time",
- "# Completely satisfied with waiting time"
+ "# Completely satisfied with waiting time",
+
+ "Route method",
+ "Mean optimality gap",
+ "Max optimality gap",
+ "Rotations",
+ "Rotations proven optimal",
+ "Mean nodes expanded",
+ "Max nodes expanded",
+ "Rotation cache hits",
+ "Rotation cache misses",
+ "Rotation cache evictions",
+ "Mean waiting time at terminals",
+ "Max waiting time at terminals",
+ "Late arrivals at terminals",
+ "Rejected visits"
  };
  //add the heading to the sheet
  Row row = sheet.createRow(sheet.getLastRowNum());
@@ -273,83 +456,6 @@ Workbook workbook = new XSSFWorkbook(file);
  Sheet sheet = workbook.getSheetAt(0);
 
 
- //count satisfaction levels. satisfaction rating 1 is located at index 0, rating 2 is located at index 1, etc.
- int infoSatisfaction[] = new int[]{0,0,0,0,0,0,0};
- int waitSatisfaction[] = new int[]{0,0,0,0,0,0,0};
- for(Object[] o : this.singleBargeinfo){
- //the information satisfaction rating is located at index 14, waiting time satisfaction rating at index 15
- int info = (Integer) o[14];
- int wait = (Integer) o[15];
- infoSatisfaction[info-1]++;
- waitSatisfaction[wait-1]++;
- }
-
- // this array is used to fill the row
- Object[] rowContent = new Object[]{
- new Date(System.currentTimeMillis()),
- Port.seed,
- Port.terminalLogic,
- Port.model,
- //Port.endTime,
- //Port.warmup,
- //Port.timeSigma,
- Port.slackMethod,
-
- Port.slack,
-
- Port.slackDenominator,
-
- //Port.numTerminalMean,
- //Port.numTerminalStd,
- //Port.handlingTimeMean,
- //Port.handlingTimeStd,
- Port.arrivalRate,
-
- this.bargesEnteredPort,
- this.bargesLeftPort,
- this.bargesInPortafterWarmup,
-
- Precision.round(this.descriptiveStatistics[0].getMean(),0),
- Precision.round(this.descriptiveStatistics[0].getStandardDeviation(),0),
- Precision.round(this.descriptiveStatistics[0].getMin(),0),
- Precision.round(this.descriptiveStatistics[0].getMax(),0),
-
- Precision.round(this.descriptiveStatistics[1].getMean(),0),
- Precision.round(this.descriptiveStatistics[1].getStandardDeviation(),0),
- Precision.round(this.descriptiveStatistics[1].getMin(),0),
- Precision.round(this.descriptiveStatistics[1].getMax(),0),
-
- Precision.round(this.descriptiveStatistics[2].getMean(),0),
- Precision.round(this.descriptiveStatistics[2].getStandardDeviation(),0),
- Precision.round(this.descriptiveStatistics[2].getMin(),0),
- Precision.round(this.descriptiveStatistics[2].getMax(),0),
-
- Precision.round(this.descriptiveStatistics[3].getMean(),0),
- Precision.round(this.descriptiveStatistics[3].getStandardDeviation(),0),
- Precision.round(this.descriptiveStatistics[3].getMin(),0),
- Precision.round(this.descriptiveStatistics[3].getMax(),0),
-
- Precision.round(this.descriptiveStatistics[4].getMean(),0),
- Precision.round(this.descriptiveStatistics[4].getStandardDeviation(),0),
- Precision.round(this.descriptiveStatistics[4].getMin(),0),
- Precision.round(this.descriptiveStatistics[4].getMax(),0),
-
- infoSatisfaction[0],
- infoSatisfaction[1],
- infoSatisfaction[2],
- infoSatisfaction[3],
- infoSatisfaction[4],
- infoSatisfaction[5],
- infoSatisfaction[6],
-
- waitSatisfaction[0],
- waitSatisfaction[1],
- waitSatisfaction[2],
- waitSatisfaction[3],
- waitSatisfaction[4],
- waitSatisfaction[5],
- waitSatisfaction[6]
- };
 
  Row row = sheet.createRow(sheet.getLastRowNum()+1);
 
@@ -439,6 +545,37 @@ Workbook workbook = new XSSFWorkbook(file);
  }
 
 
+ /**
+ * Registers a rotation computed by the route solver.
+ * @param rotation the rotation
+ */
+ public void addRotation(Rotation rotation){
+ this.rotations++;
+ if(rotation.optimal){
+ this.rotationsProvenOptimal++;
+ }
+ this.nodesExpanded.addValue(rotation.nodesExpanded);
+ if(!Double.isNaN(rotation.gap)){
+ this.optimalityGap.addValue(rotation.gap);
+ }
+ }
+
+ /**
+ * Registers a visit of a barge at a terminal that ended, see Terminal.endVisit().
+ * @param visit the visit, before it is released to the pool
+ */
+ public void addVisit(Visit visit){
+ if(visit.finish < 0){
+ this.rejectedVisits++;
+ }
+ else if(visit.start >= 0){
+ this.visitWaitingTime.addValue(visit.start - visit.arrival);
+ }
+ if(visit.LAT >= 0 && visit.arrival > visit.LAT){
+ this.lateVisits++;
+ }
+ }
+
  public void resetStats(){
  //reset stats
  this.bargesInPortafterWarmup=0;
@@ -447,6 +584,16 @@ Workbook workbook = new XSSFWorkbook(file);
  for(int i=0; i<5;i++){
  this.descriptiveStatistics[i].clear();
  }
+ this.optimalityGap.clear();
+ this.nodesExpanded.clear();
+ this.rotations=0;
+ this.rotationsProvenOptimal=0;
+ this.rotationCacheHits=0;
+ this.rotationCacheMisses=0;
+ this.rotationCacheEvictions=0;
+ this.visitWaitingTime.clear();
+ this.lateVisits=0;
+ this.rejectedVisits=0;
  this.singleBargeinfo.clear();
  this.events.clear();
  }
@@ -461,7 +608,34 @@ Workbook workbook = new XSSFWorkbook(file);
 	 for(int i=0; i<5;i++){
 	 this.descriptiveStatistics[i].clear();
 	 }
+	 this.optimalityGap.clear();
+ this.nodesExpanded.clear();
+ this.rotations=0;
+ this.rotationsProvenOptimal=0;
+ this.rotationCacheHits=0;
+ this.rotationCacheMisses=0;
+ this.rotationCacheEvictions=0;
+ this.visitWaitingTime.clear();
+ this.lateVisits=0;
+ this.rejectedVisits=0;
 	 this.singleBargeinfo.clear();
 	 this.events.clear();
 	 }
-	 }
+
+ /**
+ * The event of warmupReset().
+ */
+ static class WarmupReset implements ScheduledAction{
+
+ Statistics stats;
+
+ WarmupReset(Statistics stats){
+ this.stats = stats;
+ }
+
+ @Override
+ public void execute(){
+ stats.warmupReset();
+ }
+ }
+}
@@ -1,14 +1,8 @@
 package jbarge;
 
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
-import repast.simphony.engine.schedule.ScheduleParameters;
 
 /**
  * Represents the terminal agent and everything that is associated with a
@@ -22,12 +16,41 @@ public class Terminal {
 	String name;
 
 	/**
-	 * The appointments this terminal made with barges are stored in this Map.
-	 * The key is the barge. The value is an integer array. The meaning of the
-	 * indexes in the integer array are as follows: 0 = LAT, 1 = LST, 2 = PST, 3
-	 * = PT, 4 = EDT
+	 * The simulation run this terminal is part of.
 	 */
-	Map<Barge, int[]> appointments;
+	final SimulationContext sim;
+
+	/**
+	 * The index of the terminal in sim.terminals, and the row and column of
+	 * the terminal in sim.sailingTimes. The port entrance has id 0.
+	 */
+	final int id;
+
+	/**
+	 * The appointments this terminal made with barges are stored in this book,
+	 * sorted on the LST. The key is the barge. The value is an integer array.
+	 * The meaning of the indexes in the integer array are as follows: 0 = LAT,
+	 * 1 = LST, 2 = PST, 3 = PT, 4 = EDT
+	 */
+	AppointmentBook appointments;
+
+	/**
+	 * The version of the appointments. It is increased every time an
+	 * appointment is added or removed, see RotationCache.
+	 */
+	int version;
+
+	/**
+	 * The last snapshot of the appointments, it is replaced when the version
+	 * changed.
+	 */
+	private AppointmentSnapshot snapshot;
+
+	/**
+	 * The idle gaps between the appointments, used to look up the maximum
+	 * waiting time of a barge. It is rebuilt when the version changed.
+	 */
+	private GapIndex gaps;
 
 	/**
 	 * The number of barges handling at the terminal.
@@ -37,7 +60,7 @@ public class Terminal {
 	/**
 	 * The queue at this terminal.
 	 */
-	Queue<Barge> queue;
+	BargeQueue queue;
 
 	/**
 	 * States
@@ -47,29 +70,36 @@ public class Terminal {
 	public static final int IDLE = 2;
 	
 	/**
-	 * actual arrival time of the barge
+	 * The visits of the barges that arrived at this terminal and did not
+	 * finish handling yet, with their actual arrival times.
 	 */
-	private Map<Barge, Integer> actualArrival;
+	private Map<Barge, Visit> visits;
 
 	/**
+	 * @param sim
+	 *            the simulation run
+	 * @param id
+	 *            the index of the terminal in sim.terminals
 	 * @param name
 	 *            the name of the terminal. This is used to identify the
 	 *            terminal.
 	 */
-	public Terminal(String name) {
+	public Terminal(SimulationContext sim, int id, String name) {
+		this.sim = sim;
+		this.id = id;
 		this.name = name;
-		this.appointments = new ConcurrentHashMap<Barge, int[]>();
-		this.actualArrival = new LinkedHashMap<Barge, Integer>();
-		this.queue = new LinkedList<Barge>();
+		this.appointments = new AppointmentBook();
+		this.gaps = new GapIndex();
+		this.visits = new HashMap<Barge, Visit>();
+		this.queue = new BargeQueue(this.appointments);
 		this.state = IDLE;
 		this.numHandling = 0;
 	}
 
 	/**
-	 * Add a barge to the schedule. The schedule should be sorted on the latest
-	 * starting time in order to construct waiting profiles. Because
-	 * LinkedHashMap (in which schedule is stored) does not provide this
-	 * functionality out of the box, we implemented that in this method as well.
+	 * Add a barge to the schedule. The schedule is sorted on the latest
+	 * starting time in order to construct waiting profiles, a new appointment
+	 * is placed before the appointments with the same latest starting time.
 	 * 
 	 * @param barge
 	 *            barge
@@ -77,62 +107,99 @@ public class Terminal {
 	 *            latest arrival time
 	 * @param LST
 	 *            latest starting time
-	 * @param PST
-	 *            planned starting time
 	 * @param PT
 	 *            processing time (handling time)
-	 * @param EDT
-	 *            expected departure time
 	 */
 	public void addAppointment(Barge barge, int LAT, int LST, int PT) {
-		// determine position where the appointment should be inserted.
-		// the schedule should be sorted on the LST in order to create
-		// a right waiting profile
-		// to keep track of the position we use integer i.
-		int i = 0;
-		for (Barge b : this.appointments.keySet()) {
-			// compare LAT of Barge b with the LAT of the new barge
-			if (LST > this.appointments.get(b)[1]) {
-				i++;
-			} else {
-				break;
-			}
+		// the planned starting time is the LST, the expected departure time
+		// is the PST plus the processing time
+		int PST = LST;
+		int EDT = PST + PT;
+		this.appointments.add(barge, new int[] { LAT, LST, PST, PT, EDT });
+		if (this.queue.contains(barge)) {
+			this.appointments.setQueued(barge, true);
 		}
+		this.version++;
+	}
 
-		// create a new LinkedHashMap that replaces appointments at the end of
-		// this method
-		LinkedHashMap<Barge, int[]> newAppointments = new LinkedHashMap<Barge, int[]>();
-
-		for (int j = 0; j < appointments.size() + 1; j++) {
-
-			if (j < i) {
-				// add the appointment from appointments to newAppointments
-				Barge key = (Barge) appointments.keySet().toArray()[j];
-				int[] value = appointments.get(key);
-				newAppointments.put(key, value);
-			} else if (j == i) {
-				// add the new appointment at this position
-				int PST = LST;
-				int EDT = PST + PT;
-				newAppointments
-						.put(barge, new int[] { LAT, LST, PST, PT, EDT });
-			} else {
-				// add the remaining appointment after the new appointment
-				Barge key = (Barge) appointments.keySet().toArray()[j - 1];
-				int[] value = appointments.get(key);
-				newAppointments.put(key, value);
-			}
+	/**
+	 * Removes the appointment of a barge from the schedule.
+	 * 
+	 * @param barge
+	 *            barge
+	 */
+	public void removeAppointment(Barge barge) {
+		if (this.appointments.remove(barge)) {
+			this.version++;
+		}
+	}
+
+	/**
+	 * @return an immutable snapshot of the appointments, sorted on the LST.
+	 *         The snapshot is shared until the appointments change.
+	 */
+	public AppointmentSnapshot snapshot() {
+		if (this.snapshot == null || this.snapshot.version != this.version) {
+			this.snapshot = new AppointmentSnapshot(this.appointments, this.version);
+		}
+		return this.snapshot;
+	}
+
+	/**
+	 * @return the gap index of the appointments. It is shared until the
+	 *         appointments change.
+	 */
+	public GapIndex gaps() {
+		if (this.gaps.version != this.version) {
+			this.gaps.rebuild(this.appointments, this.version);
+		}
+		return this.gaps;
+	}
+
+	/**
+	 * Starts the visit of a barge that arrives at this terminal. A barge that
+	 * arrives again after it was rejected starts a new visit.
+	 * 
+	 * @param barge
+	 *            the barge that arrived
+	 * @param time
+	 *            the actual arrival time
+	 */
+	void startVisit(Barge barge, int time) {
+		int[] appointment = this.appointments.get(barge);
+		int LAT = appointment == null ? -1 : appointment[0];
+		int LST = appointment == null ? -1 : appointment[1];
+		Visit old = this.visits.put(barge,
+				sim.visitPool.obtain(barge, this, LAT, LST, time));
+		if (old != null) {
+			sim.visitPool.release(old);
+		}
+	}
+
+	/**
+	 * Ends the visit of a barge, after it finished handling or was rejected,
+	 * adds it to the statistics and returns it to the pool.
+	 * 
+	 * @param barge
+	 *            the barge
+	 * @param time
+	 *            the finish time, or -1 if the barge was rejected
+	 */
+	void endVisit(Barge barge, int time) {
+		Visit visit = this.visits.remove(barge);
+		if (visit != null) {
+			visit.finish = time;
+			sim.stats.addVisit(visit);
+			sim.visitPool.release(visit);
 		}
-		// replace appointments with newAppointments
-		this.appointments = newAppointments;
 	}
 
 	/**
 	 * Construct and send the waiting profile
 	 */
 	public WaitingProfile constructWaitingProfile(Barge barge, int currentTime) {
-		 /*if(Port.eventsToExcel.equals("Yes")){
-			 Port.stats.addEvent(currentTime, barge.bargeNumber, (barge.toString()+ " asked Terminal " + this.toString()+
+		 /*if(sim.eventsToExcel.equals("Yes")){
+			 sim.stats.addEvent(currentTime, barge.bargeNumber, (barge.toString()+ " asked Terminal " + this.toString()+
 					 " for appoints "+
 					 " ||appointements= " +this.appointmentsToString()));
 			 }*/
@@ -151,39 +218,23 @@ public class Terminal {
 	 *            the arrival time at the terminal at the first try.
 	 */
 	public void bargeArrives(Barge barge, int time) {
-		this.actualArrival.put(barge, time);
+		this.startVisit(barge, time);
 		this.queue.add(barge);
-		//System.out.println(barge+" arrived to "+this.name+"// arraival list= "+this.actualArrival);
-
-		if (Port.terminalLogic.equals("Unreserved")
-				&& this.state == Terminal.IDLE) {
-			// //////////////////////////////////the last two argument defined
-			// by me////////////////////////////////////////////////////
-			Port.schedule.schedule(ScheduleParameters.createOneTime(time,
-					ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
-					barge, time);
-			
-		} else if (Port.terminalLogic.equals("Reserved") && this.state == Terminal.IDLE) {
-			boolean []c=checkIfHandleBarge(barge, time);
-			//if could not handle the barge and it was late check && c[1] for next one
-			if(!c[0] ){
-				checkNextPossibleBargeToHandle(time);
-			}
-		}
+
+		// the terminal logic decides whether a barge starts handling
+		sim.dispatchPolicy.bargeArrives(this, barge, time);
 	}
 	
 	/*
 	 * returns a boolean array the cell 0 is if barge handled and cell 1 if rejected
 	 */
-	private boolean[] checkIfHandleBarge(Barge barge, int time) {
+	boolean[] checkIfHandleBarge(Barge barge, int time) {
 		boolean [] result={false, false};
 		// if there is no other barge in the appointment list start handling
 		// directly
 
 		if (this.appointments.size() == 1) {
-			Port.schedule.schedule(ScheduleParameters.createOneTime(time,
-					ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
-					barge, time);
+			sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new HandleBarge(this, barge, time));
 			result[0]=true;
 			return result;
 		} else {
@@ -191,42 +242,36 @@ public class Terminal {
 			// barge can start handling
 			
 			
-			/*Barge nextBargeInSchedule = (Barge) this.appointments.keySet().toArray()[0];
-			Barge secondBargeInSchedule = (Barge) this.appointments.keySet().toArray()[1];*/
+			Barge nextBargeInSchedule = this.appointments.first();
+			Barge secondBargeInSchedule = this.appointments.second();
 			int expectedEndTimeThisBarge = time+ barge.handlingTimes.get(barge.terminals.indexOf(this));
 			int latThisBarge= this.appointments.get(barge)[0];
-			//System.out.println(this.name+" wants to check "+barge+" in this arrival list "+this.actualArrival+" and que= "+this.queue);
-			int actualArrive = this.actualArrival.get(barge);
-			/*int lstNextAppointment = this.appointments.get(nextBargeInSchedule)[1];
-			int lstSecondAppointment = this.appointments.get(secondBargeInSchedule)[1];*/
+			int actualArrive = this.visits.get(barge).arrival;
 			
 			
 			//if next in schedule and it was not late
-			if ((barge.equals(this.appointments.keySet().toArray()[0]) == true && latThisBarge >= actualArrive)) {
+			if ((barge.equals(nextBargeInSchedule) == true && latThisBarge >= actualArrive)) {
 				this.state=Terminal.HANDLING;
-				Port.schedule.schedule(ScheduleParameters.createOneTime(
-						time, ScheduleParameters.LAST_PRIORITY), this,
-						"handleBarge", barge, time);
+				sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new HandleBarge(this, barge, time));
 				result[0]=true;
 				return result;
 			}
 			//if next barge in schedule but it was late check to see if it is possible to handle it without interrupting other appointments
-			else if ((barge.equals(this.appointments.keySet().toArray()[0]) == true && latThisBarge <= actualArrive)) {
-				if (expectedEndTimeThisBarge <= this.appointments.get(this.appointments.keySet().toArray()[1])[1]){
+			else if ((barge.equals(nextBargeInSchedule) == true && latThisBarge <= actualArrive)) {
+				if (expectedEndTimeThisBarge <= this.appointments.get(secondBargeInSchedule)[1]){
 					this.state=Terminal.HANDLING;
-					Port.schedule.schedule(ScheduleParameters.createOneTime(
-							time, ScheduleParameters.LAST_PRIORITY), this,
-							"handleBarge", barge, time);
+					sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new HandleBarge(this, barge, time));
 					
 					result[0]=true;
 					return result;
 				} else {
 					this.queue.remove(barge);
-					this.appointments.remove(barge);
+					this.removeAppointment(barge);
+					this.endVisit(barge, -1);
 					//System.out.println(barge+" removed from "+this.name);
 					//System.out.println(barge+" removed from the "+ this.name);
-					if (Port.eventsToExcel.equals("Yes")) {
-						Port.stats
+					if (sim.eventSink.isRecording()) {
+						sim.eventSink
 								.addEvent(
 										time,
 										barge.bargeNumber,
@@ -243,12 +288,10 @@ public class Terminal {
 			}
 			// if it is not the next one see if it is possible to service it without interrupting others
 			//also if the next barge is late start this one
-			else if ((barge.equals(this.appointments.keySet().toArray()[0]) == false && expectedEndTimeThisBarge <= this.appointments.get(this.appointments.keySet().toArray()[0])[1])
-					||(barge.equals(this.appointments.keySet().toArray()[0]) == false && time > this.appointments.get(this.appointments.keySet().toArray()[0])[1])){
+			else if ((barge.equals(nextBargeInSchedule) == false && expectedEndTimeThisBarge <= this.appointments.get(nextBargeInSchedule)[1])
+					||(barge.equals(nextBargeInSchedule) == false && time > this.appointments.get(nextBargeInSchedule)[1])){
 				this.state=Terminal.HANDLING;
-				Port.schedule.schedule(ScheduleParameters.createOneTime(
-						time, ScheduleParameters.LAST_PRIORITY), this,
-						"handleBarge", barge, time);
+				sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new HandleBarge(this, barge, time));
 				result[0]=true;
 				return result;
 			}			
@@ -256,14 +299,15 @@ public class Terminal {
 		return result;
 	}
 
-	private Boolean checkNextPossibleBargeToHandle(int time) {
+	Boolean checkNextPossibleBargeToHandle(int time) {
 		boolean found=false;
 		if (this.queue.size() == 0) {
 			this.state = Terminal.IDLE;
 		}  else  {
 			//if(this.state == Terminal.IDLE){
 				//Iterator<Barge> it = this.appointments.keySet().iterator();
-				Barge[] barges=this.appointments.keySet().toArray(new Barge[0]);
+				// only the barges in the queue with an appointment, in LST order
+				Barge[] barges=this.appointments.queuedBarges();
 
 				for(Barge nextBargeInSchedule: barges){
 					boolean kir=this.queue.contains(nextBargeInSchedule);
@@ -273,7 +317,7 @@ public class Terminal {
 							this.state = Terminal.HANDLING;
 							return found=true;						
 						}
-//						Port.schedule.schedule(ScheduleParameters.createOneTime(time,
+//						sim.schedule.schedule(ScheduleParameters.createOneTime(time,
 //								ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
 //								nextBargeInSchedule, time);
 					}
@@ -285,7 +329,7 @@ public class Terminal {
 				if (checkIfHandleBarge(nextBargeInSchedule, time)){
 					return found=true;
 				}
-//				Port.schedule.schedule(ScheduleParameters.createOneTime(time,
+//				sim.schedule.schedule(ScheduleParameters.createOneTime(time,
 //						ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
 //						nextBargeInSchedule, time);
 			} else {
@@ -294,7 +338,7 @@ public class Terminal {
 				for (Barge nextBarge : this.queue) {
 					int expectedEndTimeThisBarge = time + nextBarge.handlingTimes.get(nextBarge.terminals.indexOf(this));
 					if (expectedEndTimeThisBarge <= lstNextAppointment) {
-						Port.schedule.schedule(ScheduleParameters
+						sim.schedule.schedule(ScheduleParameters
 								.createOneTime(time,
 										ScheduleParameters.LAST_PRIORITY),
 								this, "handleBarge", nextBarge, time);
@@ -323,15 +367,16 @@ public class Terminal {
 	public void finishHandling(Barge barge, int time) {
 
 		// remove the barge from appointments of terminal
-		this.appointments.remove(barge);
+		this.removeAppointment(barge);
+		this.endVisit(barge, time);
 		this.numHandling--;
 		
 		//this.state = Terminal.IDLE;
 		
 		// let the barge decide what to do after it finished handling
 		barge.afterFinish(time, this);
-		if (Port.eventsToExcel.equals("Yes")) {
-			Port.stats.addEvent(time, barge.bargeNumber,
+		if (sim.eventSink.isRecording()) {
+			sim.eventSink.addEvent(time, barge.bargeNumber,
 					("Finished handling at Terminal " + this.toString()));
 		}
 		
@@ -339,49 +384,8 @@ public class Terminal {
 		
 		if (this.queue.size() == 0) {
 			this.state = Terminal.IDLE;
-		} else if (Port.terminalLogic.equals("Unreserved") ) {
-			Barge nextBarge = this.queue.peek();
-			Port.schedule.schedule(ScheduleParameters.createOneTime(time,
-					ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
-					nextBarge, time);
-
-		} else if (Port.terminalLogic.equals("Reserved")) {
-//			System.out.print("queue "+this.queue);
-//			System.out.print(" appointments "+this.appointments);
-//			System.out.println(this.name);
-
-			if (!checkNextPossibleBargeToHandle(time)){
-				this.state = Terminal.IDLE;
-			}
-
-			/*Barge nextBargeInSchedule = (Barge) this.appointments.keySet().toArray()[0];
-			if (this.queue.contains(nextBargeInSchedule) == true) {
-				Port.schedule.schedule(ScheduleParameters.createOneTime(time,
-						ScheduleParameters.LAST_PRIORITY), this, "handleBarge",
-						nextBargeInSchedule, time);
-			} else {
-				int lstNextAppointment = this.appointments
-						.get(nextBargeInSchedule)[1];
-				boolean startNextBarge = false;
-				for (Barge nextBarge : this.queue) {
-					//System.out.print(nextBarge);
-					//System.out.print(nextBarge.terminals);
-					//System.out.print(" handeling times"+ nextBarge.handlingTimes);
-					//System.out.println(" "+this.name);
-					int expectedEndTimeThisBarge = time + nextBarge.handlingTimes.get(nextBarge.terminals.indexOf(this));
-					if (expectedEndTimeThisBarge <= lstNextAppointment) {
-						Port.schedule.schedule(ScheduleParameters
-								.createOneTime(time,
-										ScheduleParameters.LAST_PRIORITY),
-								this, "handleBarge", nextBarge, time);
-						startNextBarge = true;
-						break;
-					}
-				}
-				if (startNextBarge == false) {
-					this.state = Terminal.IDLE;
-				}
-			}*/
+		} else {
+			sim.dispatchPolicy.afterFinish(this, time);
 		}
 
 
@@ -414,12 +418,16 @@ public class Terminal {
 		// remove the barge from the queue
 		this.queue.remove(barge);
 		//this.appointments.remove(barge);
+		Visit visit = this.visits.get(barge);
+		if (visit != null) {
+			visit.start = currentTime;
+		}
 		barge.state = Barge.HANDLING;
 		this.state = Terminal.HANDLING;
 		this.numHandling++;
 
-		if (Port.eventsToExcel.equals("Yes")) {
-			Port.stats.addEvent(
+		if (sim.eventSink.isRecording()) {
+			sim.eventSink.addEvent(
 					currentTime,
 					barge.bargeNumber,
 					("Started handling at Terminal " + this.toString()
@@ -432,15 +440,8 @@ public class Terminal {
 		
 
 		// get handling time
-		int handlingTime = barge.handlingTimes.get(barge.terminals
-				.indexOf(this));
-		if (Port.model.equals("Stochastic")) {
-			handlingTime = (int) Math.round(Port.timeRNG.nextGaussian(
-					handlingTime, Port.timeSigma));
-			if (handlingTime < 10) {
-				handlingTime = 10;
-			}
-		}
+		int handlingTime = sim.durationModel.handlingTime(barge.handlingTimes
+				.get(barge.terminals.indexOf(this)));
 
 		// add handling time to total (actual) handling time statistic of the
 		// barge
@@ -448,9 +449,7 @@ public class Terminal {
 
 		// schedule finishHandling. at start time handling + handling time
 		int finishTime = currentTime + handlingTime;
-		Port.schedule.schedule(ScheduleParameters.createOneTime(finishTime,
-				ScheduleParameters.FIRST_PRIORITY), this, "finishHandling",
-				barge, finishTime);
+		sim.schedule.schedule(finishTime, EventScheduler.FIRST_PRIORITY, new FinishHandling(this, barge, finishTime));
 	}
 
 	/**
@@ -459,7 +458,7 @@ public class Terminal {
 	 */
 	public String appointmentsToString() {
 		String str = "Schedule of terminal " + this.name + "\n";
-		for (Barge b : this.appointments.keySet()) {
+		for (Barge b : this.appointments) {
 			str += "Barge " + b.bargeNumber + " ";
 			for (int i : this.appointments.get(b)) {
 				str += i + " ";
@@ -485,4 +484,67 @@ public class Terminal {
 	public String toString() {
 		return name;
 	}
+
+	/**
+	 * The event of bargeArrives().
+	 */
+	static class BargeArrives implements ScheduledAction {
+
+		Terminal terminal;
+		Barge barge;
+		int time;
+
+		BargeArrives(Terminal terminal, Barge barge, int time) {
+			this.terminal = terminal;
+			this.barge = barge;
+			this.time = time;
+		}
+
+		@Override
+		public void execute() {
+			terminal.bargeArrives(barge, time);
+		}
+	}
+
+	/**
+	 * The event of handleBarge().
+	 */
+	static class HandleBarge implements ScheduledAction {
+
+		Terminal terminal;
+		Barge barge;
+		int time;
+
+		HandleBarge(Terminal terminal, Barge barge, int time) {
+			this.terminal = terminal;
+			this.barge = barge;
+			this.time = time;
+		}
+
+		@Override
+		public void execute() {
+			terminal.handleBarge(barge, time);
+		}
+	}
+
+	/**
+	 * The event of finishHandling().
+	 */
+	static class FinishHandling implements ScheduledAction {
+
+		Terminal terminal;
+		Barge barge;
+		int time;
+
+		FinishHandling(Terminal terminal, Barge barge, int time) {
+			this.terminal = terminal;
+			this.barge = barge;
+			this.time = time;
+		}
+
+		@Override
+		public void execute() {
+			terminal.finishHandling(barge, time);
+		}
+	}
 }
@@ -0,0 +1,77 @@
+package jbarge;
+
+ /**
+ * Decides which barge in the queue of a terminal starts handling. The terminal logic is a parameter which can be
+ * configured in the repast GUI. It is resolved once in SimulationContext.readParameters(), see SimulationContext.dispatchPolicy.
+ */
+ public abstract class TerminalDispatchPolicy {
+
+ /**
+ * Called after a barge arrived and joined the queue of the terminal.
+ * @param terminal the terminal
+ * @param barge the barge that arrived
+ * @param time the arrival time
+ */
+ public abstract void bargeArrives(Terminal terminal, Barge barge, int time);
+
+ /**
+ * Called after a barge finished handling and the queue of the terminal is not empty.
+ * @param terminal the terminal
+ * @param time the finish time
+ */
+ public abstract void afterFinish(Terminal terminal, int time);
+
+ /**
+ * Creates the dispatch policy of a terminal logic. "Unreserved" handles the barges in the order of arrival,
+ * "Reserved" handles the barges in the order of their appointments, but also starts a barge if that does
+ * not delay the next appointment.
+ * @param terminalLogic the terminal logic, see SimulationContext.terminalLogic
+ * @return the dispatch policy
+ */
+ public static TerminalDispatchPolicy create(String terminalLogic){
+ if(terminalLogic.equals("Unreserved")){
+ return new Unreserved();
+ }
+ else if(terminalLogic.equals("Reserved")){
+ return new Reserved();
+ }
+ throw new IllegalArgumentException("Unknown terminal logic: " + terminalLogic);
+ }
+
+ static class Unreserved extends TerminalDispatchPolicy{
+
+ @Override
+ public void bargeArrives(Terminal terminal, Barge barge, int time){
+ if(terminal.state == Terminal.IDLE){
+ terminal.sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new Terminal.HandleBarge(terminal, barge, time));
+ }
+ }
+
+ @Override
+ public void afterFinish(Terminal terminal, int time){
+ Barge nextBarge = terminal.queue.peek();
+ terminal.sim.schedule.schedule(time, EventScheduler.LAST_PRIORITY, new Terminal.HandleBarge(terminal, nextBarge, time));
+ }
+ }
+
+ static class Reserved extends TerminalDispatchPolicy{
+
+ @Override
+ public void bargeArrives(Terminal terminal, Barge barge, int time){
+ if(terminal.state == Terminal.IDLE){
+ boolean[] c = terminal.checkIfHandleBarge(barge, time);
+ // if the barge could not be handled check the other barges in the queue
+ if(!c[0]){
+ terminal.checkNextPossibleBargeToHandle(time);
+ }
+ }
+ }
+
+ @Override
+ public void afterFinish(Terminal terminal, int time){
+ if(!terminal.checkNextPossibleBargeToHandle(time)){
+ terminal.state = Terminal.IDLE;
+ }
+ }
+ }
+ }
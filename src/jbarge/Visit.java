@@ -0,0 +1,52 @@
+package jbarge;
+
+ /**
+ * The visit of a barge at a terminal, from the arrival at the terminal until the barge finished handling or was
+ * rejected. The terminal keeps the visits of the barges that are at the terminal, see Terminal.visits, and releases
+ * a visit to the pool when it ends, see VisitPool. Before it is released the visit is added to the statistics, see
+ * Statistics.addVisit(). The times are -1 until they are known.
+ */
+ public class Visit {
+
+ Barge barge;
+ Terminal terminal;
+
+ /**
+ * The appointment of the barge at the terminal: latest arrival time and latest starting time.
+ */
+ int LAT, LST;
+
+ /**
+ * The actual arrival time, the start time and the finish time of the handling.
+ */
+ int arrival, start, finish;
+
+ /**
+ * Sets the visit of a barge that arrives at a terminal.
+ */
+ void set(Barge barge, Terminal terminal, int LAT, int LST, int arrival){
+ this.barge = barge;
+ this.terminal = terminal;
+ this.LAT = LAT;
+ this.LST = LST;
+ this.arrival = arrival;
+ this.start = -1;
+ this.finish = -1;
+ }
+
+ /**
+ * Clears the references to the barge and the terminal, such that a visit in the pool does not keep them.
+ */
+ void clear(){
+ this.barge = null;
+ this.terminal = null;
+ }
+
+ public String toString(){
+ if(barge == null){
+ return "Released visit";
+ }
+ return "Barge " + barge.bargeNumber + " at " + terminal + ": LAT " + LAT + ", LST " + LST
+ + ", arrival " + arrival + ", start " + start + ", finish " + finish;
+ }
+ }
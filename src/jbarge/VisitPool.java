@@ -0,0 +1,43 @@
+package jbarge;
+
+import java.util.ArrayDeque;
+
+ /**
+ * A pool of visits that ended, so that the visits of the barges in the port are reused instead of allocated for
+ * every arrival at a terminal. The pool keeps at most capacity visits, with capacity 0 nothing is pooled.
+ */
+ public class VisitPool {
+
+ ArrayDeque<Visit> free;
+ int capacity;
+
+ /**
+ * @param capacity the maximum number of visits in the pool, see SimulationContext.visitPoolSize
+ */
+ public VisitPool(int capacity){
+ this.free = new ArrayDeque<Visit>();
+ this.capacity = capacity;
+ }
+
+ /**
+ * @return a visit of a barge that arrives at a terminal, from the pool if possible
+ */
+ public Visit obtain(Barge barge, Terminal terminal, int LAT, int LST, int arrival){
+ Visit visit = this.free.poll();
+ if(visit == null){
+ visit = new Visit();
+ }
+ visit.set(barge, terminal, LAT, LST, arrival);
+ return visit;
+ }
+
+ /**
+ * Returns a visit that ended to the pool. The visit may not be used afterwards.
+ */
+ public void release(Visit visit){
+ visit.clear();
+ if(this.free.size() < this.capacity){
+ this.free.push(visit);
+ }
+ }
+ }
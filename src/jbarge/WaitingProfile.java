@@ -7,6 +7,11 @@ import java.util.ArrayList;
  * is started after it has arrived. This information is provided for
  * every possible arrival moment during a certain time horizon in the
  * form of a waiting profile.
+ * The maximum waiting time is looked up in the gap index of the terminal, see GapIndex, so the
+ * profile is only valid while the appointments of the terminal do not change, i.e., while the barge
+ * plans its rotation. The start intervals and the table of the waiting profile are only needed for
+ * the output of the barge details, so they are only built if that output is on. They are built when
+ * the profile is constructed, so the output shows the appointments at the time of planning.
  */
  public class WaitingProfile {
 
@@ -20,6 +25,29 @@ import java.util.ArrayList;
  */
  ArrayList<int[]> waitingProfile;
 
+ /**
+ * The gap index of the terminal and the handling time of the barge at the terminal.
+ */
+ GapIndex gaps;
+ int handlingTime;
+
+ /**
+ * True if the barge can not start at the terminal from the current time on, then the profile has no rows.
+ */
+ boolean empty;
+
+ /**
+ * True for the port entrance, where there is no waiting.
+ */
+ boolean portEntrance;
+
+ Barge barge;
+
+ /**
+ * The slack added to the maximum waiting time, resolved when the profile is constructed.
+ */
+ SlackPolicy slackPolicy;
+
  int currentTime;
 
  Terminal terminal;
@@ -33,16 +61,17 @@ import java.util.ArrayList;
  public WaitingProfile(Terminal terminal, Barge barge, int currentTime){
  this.currentTime=currentTime;
  this.terminal=terminal;
+ this.barge=barge;
+ this.slackPolicy = SlackPolicy.create(terminal);
  // there is no waiting at the port entrance, therefore we set all the values to 0
- if(terminal.toString().equals("t0")){
- waitingProfile = new ArrayList<int[]>();
- this.waitingProfile.add(new int[]{0,0,0});
- startIntervals = new ArrayList<int[]>();
- this.startIntervals.add(new int[]{0,0,0,0});
+ this.portEntrance = terminal.toString().equals("t0");
+ if(!this.portEntrance){
+ this.gaps = terminal.gaps();
+ this.handlingTime = gaps.size == 0 ? 0 : barge.handlingTimes.get(barge.terminals.indexOf(terminal));
+ this.empty = gaps.earliestStart(currentTime, handlingTime, currentTime) == GapIndex.NONE;
  }
- else{
- this.startIntervals(terminal,barge);
- this.waitingProfile();
+ if(barge.sim != null && "Yes".equals(barge.sim.bargesDetailsToExcel)){
+ this.buildTables();
  }
  }
 
@@ -58,7 +87,11 @@ import java.util.ArrayList;
  // every integer array in this list contains: startInterval, startTime, endTime
  startIntervals = new ArrayList<int[]>();
 
- for(int i=0; i<=terminal.appointments.size(); i++){
+ // the appointments sorted on LST, and the handling time of barge b at this terminal
+ AppointmentSnapshot appointments = terminal.snapshot();
+ int handlingTime = appointments.size == 0 ? 0 : barge.handlingTimes.get(barge.terminals.indexOf(terminal));
+
+ for(int i=0; i<=appointments.size; i++){
  // declare the values to compute for each interval
  int startInterval, startTime, endTime;
 
@@ -71,13 +104,11 @@ import java.util.ArrayList;
  }
  else{
  // start time is equal to the EDT of the last planned barge before insertion point i
- Barge key = (Barge) terminal.appointments.keySet().toArray()[i-1];
- int[] appointment = terminal.appointments.get(key);
- startTime = appointment[4]; //index 4 is EDT
+ startTime = appointments.EDT[i-1];
  }
 
  // end time
- if(i==terminal.appointments.size()){
+ if(i==appointments.size){
  endTime = Integer.MAX_VALUE; //used as infinity
  }
  else{
@@ -85,10 +116,7 @@ import java.util.ArrayList;
  // PST of the first planned barge after insertion point i,
  // minus the processing time of barge b. (They take LST in the example,
  // because they plan barges after i as late as possible)
- Barge key = (Barge) terminal.appointments.keySet().toArray()[i];
- int PST_i = terminal.appointments.get(key)[1];//index LST is 1
- int indexTerminal = barge.terminals.indexOf(terminal);
- int handlingTime = barge.handlingTimes.get(indexTerminal);
+ int PST_i = appointments.LST[i];
 endTime = PST_i - handlingTime;
  }
 
@@ -124,49 +152,56 @@ endTime = PST_i - handlingTime;
  */
  public int getMaxWaitingTime(int t){
 
- //search index of waiting profile to use
- for(int i=(waitingProfile.size()-1); i>=0; i--){
-	 
-	 /*if (t>=startIntervals.get(i)[1]&&t<=startIntervals.get(i)[2]){
-	 mwt=0;
-	 break;
- } else if (i<startIntervals.size()-1){
-	 if(t>startIntervals.get(i)[2]&& t<startIntervals.get(i+1)[1]){
-		 mwt=startIntervals.get(i+1)[1]-t;
-		 break;
-	 }
-	 
- }*/
-
- if(t>=waitingProfile.get(i)[0]){
-
- int mwt;
+ if(this.portEntrance){
+ return t >= 0 ? slackPolicy.apply(0) : 0;
+ }
+ // there is no row in the waiting profile for t
+ if(this.empty || t < this.currentTime){
+ return 0;
+ }
 
- // mwt maximum waiting time + current time - arrival time
- int time = waitingProfile.get(i)[0];
- int maxWaitingTime = waitingProfile.get(i)[1];
- if (i>0 && t==waitingProfile.get(i)[0]){
-	 mwt=0;
- }else{
-	 mwt = maxWaitingTime + time - t;
+ // mwt maximum waiting time: the earliest start from t on - arrival time.
+ // if there is no start from t on the barge is past the last start interval, then mwt is 0
+ int start = gaps.earliestStart(t, handlingTime, currentTime);
+ int mwt = start == GapIndex.NONE ? 0 : start - t;
+ return slackPolicy.apply(mwt);
  }
- 
 
- if(mwt<0){
- mwt=0;
+ /**
+ * @return true if the profile satisfies the FIFO property, see SlackPolicy.isFifo()
+ */
+ public boolean isFifo(){
+ return this.portEntrance || this.empty || slackPolicy.isFifo();
  }
- if(Port.slackMethod.equals("Constant")){
- return (mwt + Port.slack);
+
+ /**
+ * A lower bound on getMaxWaitingTime(t) for every arrival time t from the current time on.
+ * The maximum waiting time itself is never negative, the slack is only added if there is a waiting profile.
+ * @return minimum waiting time
+ */
+ public int getMinWaitingTime(){
+ if(this.empty){
+ return 0;
  }
- else if(Port.slackMethod.equals("Factor")){
- //get the number of appointments in the terminal schedule
- int numAppointments = terminal.appointments.size();
- int slack = numAppointments / Port.slackDenominator * mwt;
- return (mwt + slack);
+ return slackPolicy.apply(0);
  }
+
+ /**
+ * Builds the start intervals and the waiting profile table from the current appointments of the terminal.
+ * The tables are built when the profile is constructed if the barge details are written to the output,
+ * otherwise on the first request, from the appointments at that time.
+ */
+ void buildTables(){
+ if(this.portEntrance){
+ waitingProfile = new ArrayList<int[]>();
+ this.waitingProfile.add(new int[]{0,0,0});
+ startIntervals = new ArrayList<int[]>();
+ this.startIntervals.add(new int[]{0,0,0,0});
  }
+ else{
+ this.startIntervals(terminal,barge);
+ this.waitingProfile();
  }
- return 0; // this will never be returned, see above
  }
 
  public ArrayList<int[]> waitingProfile(){
@@ -195,6 +230,9 @@ endTime = PST_i - handlingTime;
  * @return String with the start intervals.
  */
  public String startIntervalsToString(){
+ if(this.startIntervals == null){
+ this.buildTables();
+ }
  String s = "";
  for(int[] i: this.startIntervals){
 	for(int j:i){
@@ -211,6 +249,9 @@ endTime = PST_i - handlingTime;
 		 */
 		 public String toString(){
 		
+		 if(this.waitingProfile == null){
+		 this.buildTables();
+		 }
 		 String s = "";
 		 //add the table with the time, max waiting time
 		 for(int[] i: this.waitingProfile){
@@ -0,0 +1,56 @@
+package tdtsp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+ /**
+ * The best accepted tours of a TDTSP, at most limit tours. The tours are kept in a heap with the
+ * worst tour at the head, which is removed when a better tour is accepted and the heap is full.
+ */
+ public class AcceptedTours{
+
+ int limit;
+
+ PriorityQueue<Tour> heap;
+
+ /**
+ * The number of tours offered so far.
+ */
+ long count;
+
+ /**
+ * @param limit the maximum number of tours to keep
+ */
+ public AcceptedTours(int limit){
+ this.limit = limit;
+ this.heap = new PriorityQueue<Tour>(Math.max(1, limit), Collections.reverseOrder());
+ this.count = 0;
+ }
+
+ /**
+ * Offers a tour. The route is only copied if the tour is kept.
+ */
+ public void offer(int[] route, int cost, int sailing){
+ long order = count++;
+ if(heap.size() < limit){
+ heap.add(new Tour(route.clone(), cost, sailing, order));
+ }
+ else if(limit > 0){
+ Tour worst = heap.peek();
+ if(cost < worst.cost || (cost == worst.cost && sailing < worst.sailing)){
+ heap.poll();
+ heap.add(new Tour(route.clone(), cost, sailing, order));
+ }
+ }
+ }
+
+ /**
+ * @return the kept tours from best to worst
+ */
+ public ArrayList<Tour> sorted(){
+ ArrayList<Tour> tours = new ArrayList<Tour>(heap);
+ Collections.sort(tours);
+ return tours;
+ }
+ }
@@ -0,0 +1,49 @@
+package tdtsp;
+
+import jbarge.Barge;
+
+ /**
+ * An anytime route solver for decision support, where the rotation of a barge has to be computed
+ * within a fixed latency. A tour is first constructed by the insertion heuristic, after which the
+ * branch and bound searches for a better tour until the node or time budget is used. The rotation
+ * is proven optimal if the branch and bound was completed within the budget.
+ */
+ public class AnytimeSolver implements RouteSolver{
+
+ /**
+ * The budget: the maximum number of search nodes and the maximum time in milliseconds. 0 means no limit.
+ */
+ long maxNodes, maxMillis;
+
+ public AnytimeSolver(long maxNodes, long maxMillis){
+ this.maxNodes = maxNodes;
+ this.maxMillis = maxMillis;
+ }
+
+ @Override
+ public Rotation solve(int startTime, Barge barge){
+ return this.resolve(startTime, barge, null);
+ }
+
+ /**
+ * The branch and bound starts with the best of the heuristic tour and the improved previous tour.
+ */
+ @Override
+ public Rotation resolve(int startTime, Barge barge, int[] incumbent){
+ long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1000000L : Long.MAX_VALUE;
+
+ Rotation heuristic = new HeuristicSolver(HeuristicSolver.INSERTION, 0).resolve(startTime, barge, incumbent);
+ if(heuristic.tour.length-2 > TDTSP.MAX_NODES){
+ return heuristic;
+ }
+
+ TDTSP tdtsp = new TDTSP(startTime, barge, heuristic.tour, maxNodes > 0 ? maxNodes : Long.MAX_VALUE, deadline);
+ Rotation rotation = new Rotation(barge, startTime, tdtsp.bestTour, tdtsp.bestLeaveTime, tdtsp.bestSailingTime);
+ rotation.optimal = tdtsp.optimal;
+ rotation.nodesExpanded = tdtsp.nodesExpanded;
+ if(rotation.optimal){
+ rotation.gap = 0;
+ }
+ return rotation;
+ }
+ }
@@ -0,0 +1,194 @@
+package tdtsp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+ /**
+ * The branch and bound search of the TDTSP. The recursive algorithm cuts every branch which
+ * can not lead to a tour that is better than the best tour found so far (the incumbent).
+ * A search can share its incumbent with searches of other branches that run in parallel,
+ * see SearchTask.
+ */
+ public class BranchAndBound{
+
+ TDTSP tdtsp;
+
+ /**
+ * The travel times of the TDTSP, or a copy with an own cache if the search runs in parallel.
+ */
+ TravelTimes travelTimes;
+
+ /**
+ * The route of the partial solution that is currently examined. Index 0 is the depot.
+ */
+ int[] route;
+
+ /**
+ * The incumbent: the best complete tour found by this search with its leave time and sailing time.
+ */
+ int[] incumbentTour;
+ int incumbentCost, incumbentSailing;
+
+ /**
+ * The leave time and sailing time of the best tour found by any search, packed by pack().
+ * null if the search does not run in parallel.
+ */
+ AtomicLong shared;
+
+ /**
+ * The number of partial solutions examined by this search.
+ */
+ long nodes;
+
+ /**
+ * The budget of the search: the maximum number of nodes and the System.nanoTime() at which the search stops.
+ * If the budget is used the search is aborted and the incumbent is not proven optimal.
+ */
+ long maxNodes = Long.MAX_VALUE, deadline = Long.MAX_VALUE;
+ boolean aborted;
+
+ /**
+ * @param tdtsp the TDTSP object, the lower bounds should be computed
+ * @param shared the incumbent shared with other searches, or null
+ */
+ public BranchAndBound(TDTSP tdtsp, AtomicLong shared){
+ this.tdtsp = tdtsp;
+ this.route = new int[tdtsp.numNodes+2];
+ this.shared = shared;
+ this.travelTimes = shared == null ? tdtsp.travelTimes : new TravelTimes(tdtsp.travelTimes);
+ }
+
+ /**
+ * Starts the search with a known tour as incumbent, e.g., a tour found by a heuristic.
+ * Tours that tie with this tour are pruned, so the result may be another tour with the same
+ * leave time and sailing time than the tour selected without this incumbent.
+ */
+ public void setIncumbent(int[] tour, int cost, int sailing){
+ this.incumbentTour = tour.clone();
+ this.incumbentCost = cost;
+ this.incumbentSailing = sailing;
+ this.share(cost, sailing);
+ }
+
+ /**
+ * Limits the search to maxNodes nodes and to the deadline (System.nanoTime()).
+ */
+ public void setBudget(long maxNodes, long deadline){
+ this.maxNodes = maxNodes;
+ this.deadline = deadline;
+ }
+
+ /**
+ * The recursive algorithm with pruning. The partial solutions are examined in the same order as in TDTSP.solve(),
+ * the incumbent is only replaced by a tour with an earlier leave time or an equal leave time and less sailing time.
+ * The result is therefore the same tour as selected by minimizeSailingtime() after a full enumeration.
+ * @param sol the partial solution
+ * @param time the departure time from the previous node
+ * @param sailing the sailing time of the partial solution, including the sailing to its last node
+ * @param depth the position of the last node in the route
+ */
+ public void search(PartialSolution sol, int time, int sailing, int depth){
+
+ //stop if the budget is used, the clock is only read every 1024 nodes
+ if(this.aborted){
+ return;
+ }
+ if(++this.nodes > this.maxNodes || ((this.nodes & 1023) == 0 && System.nanoTime() > this.deadline)){
+ this.aborted = true;
+ return;
+ }
+
+ //compute cost to cost (cost = arrival time)
+ time += this.travelTimes.timeDependentTravelTime(sol.previousNode, sol.lastNode, time);
+
+ //add to route
+ this.route[depth] = sol.lastNode;
+
+ int exam = sol.examine();
+ if (exam == PartialSolution.ACCEPT){
+
+ //return to the depot
+ int toDepot = sol.computeCost(sol.lastNode, 0);
+ time += toDepot;
+ sailing += toDepot;
+ this.route[depth+1] = 0;
+
+ //replace the incumbent if the tour is better
+ if(this.incumbentTour == null || time < this.incumbentCost
+ || (time == this.incumbentCost && sailing < this.incumbentSailing)){
+ this.incumbentTour = this.route.clone();
+ this.incumbentCost = time;
+ this.incumbentSailing = sailing;
+ this.share(time, sailing);
+ }
+ }
+ else if (exam == PartialSolution.CONTINUE && !this.prune(sol.visited, time, sailing)){
+ for(PartialSolution p : sol.extend()){
+ search(p, time, sailing + sol.computeCost(sol.lastNode, p.lastNode), depth+1);
+ }
+ }
+ }
+
+ /**
+ * Checks whether a branch can be cut. The lower bound on the remaining leave time is the least sailing time
+ * to and least stay at every unvisited node plus the least sailing time from an unvisited node to the depot.
+ * The branch is cut if it can at best tie with the incumbent of this search, because that incumbent was found first.
+ * It is only cut on the shared incumbent if it can not even tie, because the shared incumbent may come from a
+ * branch that is later in the enumeration order.
+ * @param visited the visited nodes
+ * @param time the departure time from the last node
+ * @param sailing the sailing time so far
+ * @return true if the branch can not lead to a better tour than the incumbent
+ */
+ boolean prune(int visited, int time, int sailing){
+ if(this.incumbentTour == null && this.shared == null){
+ return false;
+ }
+ int unvisited = ~visited & ((1 << tdtsp.numNodes) - 1);
+ int stay = 0, sail = 0, toDepot = Integer.MAX_VALUE;
+ while(unvisited != 0){
+ int node = Integer.numberOfTrailingZeros(unvisited) + 1;
+ unvisited &= unvisited - 1;
+ stay += tdtsp.minStay[node];
+ sail += tdtsp.minSailingTo[node];
+ toDepot = Math.min(toDepot, tdtsp.sailingTimes[node][0]);
+ }
+ sail += toDepot;
+ int costBound = time + stay + sail;
+ int sailingBound = sailing + sail;
+ if(this.incumbentTour != null && (costBound > this.incumbentCost
+ || (costBound == this.incumbentCost && sailingBound >= this.incumbentSailing))){
+ return true;
+ }
+ return this.shared != null && pack(costBound, sailingBound) > this.shared.get();
+ }
+
+ /**
+ * Lowers the shared incumbent to the given leave time and sailing time, if it is better.
+ */
+ void share(int cost, int sailing){
+ if(this.shared != null){
+ long packed = pack(cost, sailing);
+ long current = this.shared.get();
+ while(packed < current && !this.shared.compareAndSet(current, packed)){
+ current = this.shared.get();
+ }
+ }
+ }
+
+ /**
+ * Packs a leave time and sailing time in a long, so that comparing the longs compares on leave time first
+ * and on sailing time second.
+ */
+ static long pack(int cost, int sailing){
+ return ((long) cost << 32) | (sailing & 0xFFFFFFFFL);
+ }
+
+ /**
+ * Checks whether the incumbent of this search is better than the incumbent of the other search.
+ * Ties are not better, so the search that comes first in the enumeration order keeps its tour.
+ */
+ boolean isBetterThan(BranchAndBound other){
+ return this.incumbentTour != null && (other.incumbentTour == null || this.incumbentCost < other.incumbentCost
+ || (this.incumbentCost == other.incumbentCost && this.incumbentSailing < other.incumbentSailing));
+ }
+ }
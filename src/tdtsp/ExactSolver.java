@@ -0,0 +1,76 @@
+package tdtsp;
+
+import java.util.concurrent.ForkJoinPool;
+
+import jbarge.Barge;
+
+ /**
+ * Solves the TDTSP exactly with one of the TDTSP methods.
+ */
+ public class ExactSolver implements RouteSolver{
+
+ /**
+ * TDTSP.ENUMERATION, TDTSP.DYNAMIC_PROGRAM, TDTSP.BRANCH_AND_BOUND or TDTSP.PARALLEL
+ */
+ int method;
+
+ /**
+ * The configuration of the PARALLEL method and the number of accepted tours that is kept, see TDTSP.
+ */
+ int splitDepth, parallelMinNodes, acceptedLimit;
+
+ /**
+ * The fork-join pool of the PARALLEL method, shared by the barges of the simulation run. Null for the other methods,
+ * or to search sequentially. The pool belongs to the simulation run, which shuts it down.
+ */
+ ForkJoinPool pool;
+
+ /**
+ * Creates a solver that searches sequentially and keeps only the best tour.
+ */
+ public ExactSolver(int method){
+ this(method, null, 0, 0, 0);
+ }
+
+ /**
+ * @param method the TDTSP method
+ * @param pool the fork-join pool of the PARALLEL method, null to search sequentially
+ * @param splitDepth the number of levels of the search tree that PARALLEL splits into tasks
+ * @param parallelMinNodes the least number of nodes for which PARALLEL splits the search
+ * @param acceptedLimit the maximum number of accepted tours kept by ENUMERATION, 0 keeps only the best tour
+ */
+ public ExactSolver(int method, ForkJoinPool pool, int splitDepth, int parallelMinNodes, int acceptedLimit){
+ this.method = method;
+ this.pool = pool;
+ this.splitDepth = splitDepth;
+ this.parallelMinNodes = parallelMinNodes;
+ this.acceptedLimit = acceptedLimit;
+ }
+
+ @Override
+ public Rotation solve(int startTime, Barge barge){
+ TDTSP tdtsp = new TDTSP(startTime, barge, method, pool, splitDepth, parallelMinNodes, acceptedLimit);
+ Rotation rotation = new Rotation(barge, startTime, tdtsp.bestTour, tdtsp.bestLeaveTime, tdtsp.bestSailingTime);
+ rotation.optimal = tdtsp.optimal;
+ rotation.gap = 0;
+ rotation.nodesExpanded = tdtsp.nodesExpanded;
+ return rotation;
+ }
+
+ /**
+ * The branch and bound methods start with the previous tour as incumbent, the search is sequential.
+ * The other methods solve from scratch.
+ */
+ @Override
+ public Rotation resolve(int startTime, Barge barge, int[] incumbent){
+ if(method != TDTSP.BRANCH_AND_BOUND && method != TDTSP.PARALLEL){
+ return this.solve(startTime, barge);
+ }
+ TDTSP tdtsp = new TDTSP(startTime, barge, incumbent, Long.MAX_VALUE, Long.MAX_VALUE);
+ Rotation rotation = new Rotation(barge, startTime, tdtsp.bestTour, tdtsp.bestLeaveTime, tdtsp.bestSailingTime);
+ rotation.optimal = tdtsp.optimal;
+ rotation.gap = 0;
+ rotation.nodesExpanded = tdtsp.nodesExpanded;
+ return rotation;
+ }
+ }
@@ -0,0 +1,216 @@
+package tdtsp;
+
+import jbarge.Barge;
+
+ /**
+ * A time dependent heuristic for the rotation of a barge that visits many terminals.
+ * A tour is constructed by nearest neighbour or by insertion, after which it is improved by
+ * 2-opt and Or-opt local search. Every tour is evaluated with the time dependent travel times,
+ * i.e., with the waiting profiles of the terminals. A tour is better than another tour if it has
+ * an earlier leave time, or the same leave time and less sailing time.
+ * If the number of terminals is at most gapMaxNodes the rotation is compared with the exact solution, which
+ * costs an exact solve per rotation, so gapMaxNodes is only meant for diagnostics.
+ */
+ public class HeuristicSolver implements RouteSolver{
+
+ /**
+ * Construction methods. NEAREST_NEIGHBOUR sails to the terminal where the handling is finished first,
+ * INSERTION inserts the terminals one by one at the position with the earliest leave time.
+ */
+ public static final int NEAREST_NEIGHBOUR = 1;
+ public static final int INSERTION = 2;
+
+ /**
+ * The maximum number of improvements of the local search.
+ */
+ public static final int MAX_IMPROVEMENTS = 1000;
+
+ int construction;
+
+ /**
+ * The maximum number of terminals for which the optimality gap is computed, 0 to never compute the gap.
+ */
+ int gapMaxNodes;
+
+ public HeuristicSolver(int construction, int gapMaxNodes){
+ this.construction = construction;
+ this.gapMaxNodes = gapMaxNodes;
+ }
+
+ @Override
+ public Rotation solve(int startTime, Barge barge){
+ return this.resolve(startTime, barge, null);
+ }
+
+ /**
+ * The previous tour is improved by the local search as well, the best of both tours is returned.
+ */
+ @Override
+ public Rotation resolve(int startTime, Barge barge, int[] incumbent){
+ TravelTimes times = new TravelTimes(barge);
+ int n = times.numNodes;
+
+ int[] tour;
+ if(construction == INSERTION){
+ tour = this.insertion(times, startTime);
+ }
+ else{
+ tour = this.nearestNeighbour(times, startTime);
+ }
+ this.localSearch(times, startTime, tour);
+
+ if(incumbent != null){
+ int[] warm = incumbent.clone();
+ this.localSearch(times, startTime, warm);
+ if(this.isBetter(times, startTime, warm, times.leaveTime(tour, n+1, startTime), times.sailingTime(tour, n+1))){
+ tour = warm;
+ }
+ }
+
+ Rotation rotation = new Rotation(barge, startTime, tour, times.leaveTime(tour, n+1, startTime), times.sailingTime(tour, n+1));
+ if(n <= gapMaxNodes){
+ rotation.setGap(new ExactSolver(TDTSP.BRANCH_AND_BOUND).solve(startTime, barge));
+ }
+ return rotation;
+ }
+
+ /**
+ * Constructs a tour by sailing to the unvisited terminal where the handling is finished first.
+ * @return the tour, e.g., {0, 1, 5, 9, 0}
+ */
+ int[] nearestNeighbour(TravelTimes times, int startTime){
+ int n = times.numNodes;
+ int[] tour = new int[n+2];
+ boolean[] visited = new boolean[n+1];
+ int time = startTime + times.timeDependentTravelTime(0, 0, startTime);
+ for(int i=1; i<=n; i++){
+ int best = -1, bestTime = 0;
+ for(int node=1; node<=n; node++){
+ if(!visited[node]){
+ int finish = time + times.timeDependentTravelTime(tour[i-1], node, time);
+ if(best < 0 || finish < bestTime){
+ best = node;
+ bestTime = finish;
+ }
+ }
+ }
+ tour[i] = best;
+ visited[best] = true;
+ time = bestTime;
+ }
+ tour[n+1] = 0;
+ return tour;
+ }
+
+ /**
+ * Constructs a tour by inserting the terminals one by one, each at the position that gives the
+ * earliest leave time of the partial tour.
+ * @return the tour, e.g., {0, 1, 5, 9, 0}
+ */
+ int[] insertion(TravelTimes times, int startTime){
+ int n = times.numNodes;
+ int[] tour = new int[n+2];
+ int[] candidate = new int[n+2];
+ int length = 1;
+ for(int node=1; node<=n; node++){
+ int bestPosition = -1, bestTime = 0, bestSailing = 0;
+ for(int position=1; position<=length; position++){
+ insert(tour, length, node, position, candidate);
+ int time = times.leaveTime(candidate, length+1, startTime);
+ int sailing = times.sailingTime(candidate, length+1);
+ if(bestPosition < 0 || time < bestTime || (time == bestTime && sailing < bestSailing)){
+ bestPosition = position;
+ bestTime = time;
+ bestSailing = sailing;
+ }
+ }
+ insert(tour, length, node, bestPosition, candidate);
+ System.arraycopy(candidate, 0, tour, 0, length+1);
+ length++;
+ }
+ tour[n+1] = 0;
+ return tour;
+ }
+
+ /**
+ * Copies the first length nodes of route to result with node inserted at position.
+ */
+ static void insert(int[] route, int length, int node, int position, int[] result){
+ System.arraycopy(route, 0, result, 0, position);
+ result[position] = node;
+ System.arraycopy(route, position, result, position+1, length-position);
+ }
+
+ /**
+ * Improves the tour with 2-opt (reversing a part of the tour) and Or-opt (moving one, two or three
+ * consecutive terminals to another position) until no move gives a better tour.
+ * @param tour the tour, it is changed in place
+ */
+ void localSearch(TravelTimes times, int startTime, int[] tour){
+ int n = times.numNodes;
+ int[] candidate = new int[n+2];
+ int bestTime = times.leaveTime(tour, n+1, startTime);
+ int bestSailing = times.sailingTime(tour, n+1);
+
+ int improvements = 0;
+ boolean improved = true;
+ while(improved && improvements < MAX_IMPROVEMENTS){
+ improved = false;
+
+ // 2-opt: reverse tour[i..j]
+ for(int i=1; i<n && !improved; i++){
+ for(int j=i+1; j<=n && !improved; j++){
+ System.arraycopy(tour, 0, candidate, 0, n+2);
+ for(int k=0; k<=j-i; k++){
+ candidate[i+k] = tour[j-k];
+ }
+ improved = this.isBetter(times, startTime, candidate, bestTime, bestSailing);
+ }
+ }
+
+ // Or-opt: move tour[i..i+segment-1] to position p of the remaining tour
+ for(int segment=1; segment<=3 && !improved; segment++){
+ for(int i=1; i+segment-1<=n && !improved; i++){
+ for(int p=1; p<=n-segment+1 && !improved; p++){
+ if(p != i){
+ move(tour, n, i, segment, p, candidate);
+ improved = this.isBetter(times, startTime, candidate, bestTime, bestSailing);
+ }
+ }
+ }
+ }
+
+ if(improved){
+ System.arraycopy(candidate, 0, tour, 0, n+2);
+ bestTime = times.leaveTime(tour, n+1, startTime);
+ bestSailing = times.sailingTime(tour, n+1);
+ improvements++;
+ }
+ }
+ }
+
+ /**
+ * Copies the tour with n terminals to result, with the segment tour[i..i+segment-1] moved so that it starts
+ * at position p after it is removed.
+ */
+ static void move(int[] tour, int n, int i, int segment, int p, int[] result){
+ int index = 1;
+ result[0] = 0;
+ for(int k=1; k<=n; k++){
+ if(k < i || k >= i+segment){
+ if(index == p){
+ index += segment;
+ }
+ result[index++] = tour[k];
+ }
+ }
+ System.arraycopy(tour, i, result, p, segment);
+ result[n+1] = 0;
+ }
+
+ boolean isBetter(TravelTimes times, int startTime, int[] candidate, int bestTime, int bestSailing){
+ int n = times.numNodes;
+ int time = times.leaveTime(candidate, n+1, startTime);
+ return time < bestTime || (time == bestTime && times.sailingTime(candidate, n+1) < bestSailing);
+ }
+ }
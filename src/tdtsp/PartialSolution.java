@@ -1,14 +1,24 @@
 package tdtsp;
 
-import java.util.ArrayList; 
- import jbarge.Terminal;
+import java.util.ArrayList;
 
  /**
  * Partial solution of TDTSP.
+ * The set S of visited nodes is stored as a bitmask (bit i-1 is node i, the depot is not stored)
+ * and the last node visited k is stored as a byte. The binary String notation
+ * (example 000000110001011) is only built on request as a debug view.
  */
  public class PartialSolution{
 
- public String currentSet, previousSet;
+ /**
+ * The visited nodes of this partial solution and of its predecessor.
+ */
+ public int visited, previousVisited;
+
+ /**
+ * The last node visited in this partial solution and in its predecessor.
+ */
+ public byte lastNode, previousNode;
 
  public static final int ACCEPT = 1;
  public static final int ABANDON = 2;
@@ -18,13 +28,17 @@ import java.util.ArrayList;
 
  /**
  * Constructor of PartialSolution
- * @param currentSet example 000000110001011
- * @param previousSet example 000000110001101
+ * @param visited bitmask of the visited nodes, bit i-1 is node i
+ * @param lastNode the last node visited
+ * @param previousVisited bitmask of the visited nodes of the predecessor
+ * @param previousNode the last node visited of the predecessor
  * @param tdtsp the TDTSP object
  */
- public PartialSolution(String currentSet, String previousSet, TDTSP tdtsp){
- this.currentSet = currentSet;
- this.previousSet = previousSet;
+ public PartialSolution(int visited, int lastNode, int previousVisited, int previousNode, TDTSP tdtsp){
+ this.visited = visited;
+ this.lastNode = (byte) lastNode;
+ this.previousVisited = previousVisited;
+ this.previousNode = (byte) previousNode;
  this.tdtsp=tdtsp;
  }
 
@@ -33,31 +47,12 @@ import java.util.ArrayList;
  * @return
  */
  public ArrayList<PartialSolution> extend(){
- ArrayList<PartialSolution> set = new ArrayList<PartialSolution>();
- for(int i = tdtsp.numNodes-1; i>=0; i--){
- String node = ""+currentSet.charAt(i);
- String newNode = "";
- if(node.equals("0")){
-
- //set unvisited node from 0 to 1
- String newSet = currentSet.substring(0,i) + '1' + currentSet.substring(i+1, tdtsp.numNodes) ;
-
- //set the last visited to the new node visited and get the corresponding 5 bit notation
- newNode = Integer.toBinaryString(tdtsp.numNodes-i);
- String zeros="";
- for(int u=0; u< 5-newNode.length(); u++){
- zeros+="0";
- }
- newNode=zeros+newNode;
-
- //add the last node visited to the new set
- newSet+=newNode;
-
- //create the partial solution
- PartialSolution newSol = new PartialSolution(newSet, currentSet, tdtsp);
-
- //add the partial solution to set
- set.add(newSol);
+ ArrayList<PartialSolution> set = new ArrayList<PartialSolution>(tdtsp.numNodes);
+ for(int node = 1; node <= tdtsp.numNodes; node++){
+ int bit = 1 << (node-1);
+ if((visited & bit) == 0){
+ //set the unvisited node to visited and make it the last node visited
+ set.add(new PartialSolution(visited | bit, node, visited, lastNode, tdtsp));
  }
  }
  return set;
@@ -84,40 +79,24 @@ import java.util.ArrayList;
  * @return
  */
  public int timeDependentTravelTime(int departureTime){
-
- int originIndex = getLastNodeVisited(previousSet);
- int destinIndex = getLastNodeVisited(currentSet);
-
- Terminal destinTerminal = tdtsp.barge.terminals.get(destinIndex);
-int sailingTime = tdtsp.sailingTimes[originIndex][destinIndex];
- int waitingTime = tdtsp.barge.waitingProfiles.get(destinTerminal).getMaxWaitingTime(departureTime+sailingTime);
- int handlingTime = tdtsp.barge.handlingTimes.get(destinIndex);
-
- int tdtt = sailingTime + waitingTime + handlingTime;
-
- return tdtt;
+ return tdtsp.timeDependentTravelTime(previousNode, lastNode, departureTime);
  }
 
  /**
  * get last node from the current set
- * @return
+ * @return the index of the the terminal in barge.terminals
  */
  public int getLastNodeVisited(){
- return getLastNodeVisited(currentSet);
+ return lastNode;
  }
 
  /**
- * get last node from binary string s
+ * get last node from binary string s. Only used to read the debug view.
  * @param s example 000000110001011 (the last five digits contains info about the last visited node)
  * @return the index of the the terminal in barge.terminals
  */
  public int getLastNodeVisited(String s){
- String last="";
- for(int i = tdtsp.numNodes; i<tdtsp.numNodes+5; i++){
- last=last+s.charAt(i);
- }
- int b = Integer.parseInt(last,2);
- return b;
+ return Integer.parseInt(s.substring(tdtsp.numNodes, tdtsp.numNodes+5), 2);
  }
 
  /**
@@ -125,14 +104,7 @@ int sailingTime = tdtsp.sailingTimes[originIndex][destinIndex];
  * @return the number of visited nodes
  */
  public int getNumVisited(){
- int numVisited = 0;
- for(int i = tdtsp.numNodes-1; i>=0; i--){
- String node = ""+currentSet.charAt(i);
- if(node.equals("1")){
- numVisited++;
- }
- }
- return numVisited;
+ return Integer.bitCount(visited);
  }
 
  /**
@@ -141,20 +113,56 @@ int sailingTime = tdtsp.sailingTimes[originIndex][destinIndex];
  * @return
  */
  public int computeCost(){
- int origin = getLastNodeVisited(previousSet);
- int destination = getLastNodeVisited(currentSet);;
- return tdtsp.sailingTimes[origin][destination];
+ return tdtsp.sailingTimes[previousNode][lastNode];
  }
 
  /**
  * get the cost of adding a node.
  * still used for getting the cost of the return to the depot, which is not time dependent
- * @param origin example 000000110001011
- * @param destination example 000000110001011
+ * @param origin index of the origin node
+ * @param destination index of the destination node
  * @return
  */
  public int computeCost(int origin, int destination){
  return tdtsp.sailingTimes[origin][destination];
  }
 
+ /**
+ * @return the current set in the binary String notation, example 000000110001011
+ */
+ public String getCurrentSet(){
+ return toBinaryString(visited, lastNode, tdtsp.numNodes);
+ }
+
+ /**
+ * @return the previous set in the binary String notation, example 000000110001101
+ */
+ public String getPreviousSet(){
+ return toBinaryString(previousVisited, previousNode, tdtsp.numNodes);
+ }
+
+ /**
+ * Converts a state to the binary String notation. The first numNodes characters are the
+ * visited nodes (node 1 is the last of these characters), the last five digits contain the last node visited.
+ * @param visited bitmask of the visited nodes
+ * @param lastNode the last node visited
+ * @param numNodes number of nodes excluding the depot
+ * @return the binary String
+ */
+ public static String toBinaryString(int visited, int lastNode, int numNodes){
+ StringBuilder s = new StringBuilder(numNodes+5);
+ for(int node = numNodes; node >= 1; node--){
+ s.append((visited & (1 << (node-1))) != 0 ? '1' : '0');
+ }
+ String last = Integer.toBinaryString(lastNode);
+ for(int u=0; u< 5-last.length(); u++){
+ s.append('0');
+ }
+ return s.append(last).toString();
+ }
+
+ public String toString(){
+ return getCurrentSet();
+ }
+
  }
@@ -0,0 +1,103 @@
+package tdtsp;
+
+import jbarge.Barge;
+
+ /**
+ * The rotation of a barge as computed by a RouteSolver.
+ */
+ public class Rotation{
+
+ /**
+ * The route as a sequence of nodes, e.g., {0, 1, 5, 9, 0}. The nodes are indexes in barge.terminals.
+ */
+ public int[] tour;
+
+ /**
+ * The String notation of the route, e.g., " 0 1 5 9 0".
+ */
+ public String bestRoute;
+
+ /**
+ * The best leave time is the time in of leaving the port. The best sojourn time is
+ * the time of leaving the port minus the time of arrival at the port.
+ */
+ public int bestLeaveTime, bestSojournTime, bestSailingTime;
+
+ /**
+ * True if the rotation is proven to have the lowest sojourn time.
+ */
+ public boolean optimal;
+
+ /**
+ * The optimality gap: (sojourn time - optimal sojourn time) / optimal sojourn time.
+ * NaN if the optimal sojourn time is not known.
+ */
+ public double gap;
+
+ /**
+ * The number of search nodes the solver examined.
+ */
+ public long nodesExpanded;
+
+ Barge barge;
+
+ public Rotation(Barge barge, int startTime, int[] tour, int leaveTime, int sailingTime){
+ this.barge = barge;
+ this.tour = tour;
+ this.bestRoute = routeToString(tour);
+ this.bestLeaveTime = leaveTime;
+ this.bestSojournTime = leaveTime - startTime;
+ this.bestSailingTime = sailingTime;
+ this.optimal = false;
+ this.gap = Double.NaN;
+ }
+
+ /**
+ * Sets the gap and whether this rotation is optimal with respect to the optimal rotation.
+ * @param optimal the optimal rotation of the same barge and start time
+ */
+ public void setGap(Rotation optimal){
+ this.optimal = this.bestLeaveTime == optimal.bestLeaveTime;
+ if(optimal.bestSojournTime == 0){
+ this.gap = 0;
+ }
+ else{
+ this.gap = (double)(this.bestSojournTime - optimal.bestSojournTime) / optimal.bestSojournTime;
+ }
+ }
+
+ /**
+ * This method converts the best route to a printable String for the console
+ * @return a string with the terminals of the best route
+ */
+ public String bestRouteToString(){
+ return routeToTerminalString(this.tour, this.barge);
+ }
+
+ /**
+ * Converts a route to the String notation of the best route, e.g., " 0 1 5 9 0".
+ * @param route the sequence of nodes
+ * @return the String representation of the route
+ */
+ public static String routeToString(int[] route){
+ StringBuilder s = new StringBuilder();
+ for(int node : route){
+ s.append(' ').append(node);
+ }
+ return s.toString();
+ }
+
+ /**
+ * Converts a route to a String with the terminal names, e.g., " t0 t3 t7 t0".
+ * @param route the sequence of nodes
+ * @param barge the barge that sails the route
+ * @return the String representation of the route
+ */
+ public static String routeToTerminalString(int[] route, Barge barge){
+ StringBuilder s = new StringBuilder();
+ for(int node : route){
+ s.append(' ').append(barge.terminals.get(node).toString());
+ }
+ return s.toString();
+ }
+ }
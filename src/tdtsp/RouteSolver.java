@@ -0,0 +1,28 @@
+package tdtsp;
+
+import jbarge.Barge;
+
+ /**
+ * Computes the rotation of a barge: the order in which it visits its terminals.
+ * The solver is chosen for a simulation run in SimulationContext.readParameters.
+ */
+ public interface RouteSolver{
+
+ /**
+ * @param startTime the time the barge starts the rotation at the depot (port entrance)
+ * @param barge the barge with its terminals, handling times, sailing times and waiting profiles
+ * @return the rotation
+ */
+ Rotation solve(int startTime, Barge barge);
+
+ /**
+ * Computes the rotation again, e.g., after the barge was rejected at a terminal. The previous tour is used
+ * as a warm start: the result is at least as good as the previous tour. A solver that can not use it
+ * solves from scratch.
+ * @param startTime the time the barge starts the rotation at the depot (port entrance)
+ * @param barge the barge with its terminals, handling times, sailing times and waiting profiles
+ * @param incumbent the previous tour in the node indexes of barge, e.g., {0, 2, 1, 0}
+ * @return the rotation
+ */
+ Rotation resolve(int startTime, Barge barge, int[] incumbent);
+ }
@@ -0,0 +1,79 @@
+package tdtsp;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+ /**
+ * A fork-join task of the parallel TDTSP search. The first splitDepth levels (see TDTSP) of the search
+ * tree are split into subtasks, one for every partial solution returned by extend(). The deeper
+ * levels are searched by a BranchAndBound. All tasks share the incumbent so that pruning still works.
+ * The results are combined in the enumeration order, so the result does not depend on the
+ * order in which the tasks finish.
+ */
+ public class SearchTask extends RecursiveTask<BranchAndBound>{
+
+ private static final long serialVersionUID = 1L;
+
+ TDTSP tdtsp;
+
+ PartialSolution sol;
+
+ /**
+ * The departure time from the previous node, the sailing time so far and the position of the last node in the route.
+ */
+ int time, sailing, depth;
+
+ /**
+ * The route up to (excluding) the last node of sol.
+ */
+ int[] route;
+
+ AtomicLong shared;
+
+ public SearchTask(TDTSP tdtsp, PartialSolution sol, int time, int sailing, int depth, int[] route, AtomicLong shared){
+ this.tdtsp = tdtsp;
+ this.sol = sol;
+ this.time = time;
+ this.sailing = sailing;
+ this.depth = depth;
+ this.route = route;
+ this.shared = shared;
+ }
+
+ @Override
+ protected BranchAndBound compute(){
+
+ // search the rest of the branch in this task
+ if(depth >= tdtsp.splitDepth || sol.examine() != PartialSolution.CONTINUE){
+ BranchAndBound search = new BranchAndBound(tdtsp, shared);
+ System.arraycopy(route, 0, search.route, 0, depth);
+ search.search(sol, time, sailing, depth);
+ return search;
+ }
+
+ // split the branch in a subtask for every next node
+ int arrival = time + tdtsp.travelTimes.computeTravelTime(sol.previousNode, sol.lastNode, time);
+ int[] prefix = route.clone();
+ prefix[depth] = sol.lastNode;
+
+ ArrayList<SearchTask> tasks = new ArrayList<SearchTask>();
+ for(PartialSolution p : sol.extend()){
+ tasks.add(new SearchTask(tdtsp, p, arrival, sailing + sol.computeCost(sol.lastNode, p.lastNode), depth+1, prefix, shared));
+ }
+ invokeAll(tasks);
+
+ // the first best tour in the enumeration order. the nodes of all searches are added to the returned search
+ BranchAndBound best = null;
+ long nodes = 1;
+ for(SearchTask task : tasks){
+ BranchAndBound search = task.join();
+ nodes += search.nodes;
+ if(best == null || search.isBetterThan(best)){
+ best = search;
+ }
+ }
+ best.nodes = nodes;
+ return best;
+ }
+ }
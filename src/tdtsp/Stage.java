@@ -1,55 +1,73 @@
 package tdtsp;
 
-import java.util.ArrayList; 
+import java.util.Arrays;
  /**
- * Stage of the TDTSP.
+ * Stage of the TDTSP. Stage k holds the labels (S, k) of all partial tours that visited
+ * |S| = k nodes. The attributes of a label are stored in parallel primitive arrays,
+ * a label is identified by its index in these arrays.
  */
  public class Stage {
 
  // arrival times at last node
- ArrayList<Integer> cost;
+ int[] cost;
 
  // S and k are stored in parallel in an array
- ArrayList<String> set;
+ int[] set;
+ int[] last;
 
- //predecessor nodes
- ArrayList<String> pred;
+ // sailing time of the partial tour, used to break ties between equal arrival times
+ int[] sailing;
 
- public Stage() {
- this.cost = new ArrayList<Integer>();
- this.set = new ArrayList<String>();
- this.pred = new ArrayList<String>();
- }
-
- public Stage(Stage stage){
- this.cost = new ArrayList<Integer>();
- this.set = new ArrayList<String>();
- this.pred = new ArrayList<String>();
+ //predecessor label in the previous stage
+ int[] pred;
 
+ // number of labels in this stage
+ int size;
 
- for(int c : stage.cost){
- this.cost.add(c);
+ public Stage() {
+ this(16);
  }
 
- for(String s : stage.set){
- this.set.add(s);
+ public Stage(int capacity) {
+ this.cost = new int[capacity];
+ this.set = new int[capacity];
+ this.last = new int[capacity];
+ this.sailing = new int[capacity];
+ this.pred = new int[capacity];
+ this.size = 0;
  }
 
- for(String p : stage.pred){
- this.pred.add(p);
- }
+ /**
+ * Add a label to this stage.
+ * @return the index of the label
+ */
+ public int add(int set, int last, int cost, int sailing, int pred){
+ if(size == this.cost.length){
+ int capacity = size*2;
+ this.cost = Arrays.copyOf(this.cost, capacity);
+ this.set = Arrays.copyOf(this.set, capacity);
+ this.last = Arrays.copyOf(this.last, capacity);
+ this.sailing = Arrays.copyOf(this.sailing, capacity);
+ this.pred = Arrays.copyOf(this.pred, capacity);
  }
-
- public void addCost(int cost){
- this.cost.add(cost);
+ this.set[size] = set;
+ this.last[size] = last;
+ this.cost[size] = cost;
+ this.sailing[size] = sailing;
+ this.pred[size] = pred;
+ return size++;
  }
 
- public void addSet(String set){
- this.set.add(set);
+ /**
+ * Replace the cost, sailing time and predecessor of the label at index i.
+ */
+ public void replace(int i, int cost, int sailing, int pred){
+ this.cost[i] = cost;
+ this.sailing[i] = sailing;
+ this.pred[i] = pred;
  }
 
- public void addPred(String pred){
- this.pred.add(pred);
+ public int size(){
+ return size;
  }
  }
-
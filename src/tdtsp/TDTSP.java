@@ -1,7 +1,8 @@
 package tdtsp;
 
-import java.util.ArrayList;
-import java.util.Collections; 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import jbarge.Barge; 
  /**
  * An implementation of the TDTSP. This object is used by a barge to compute
@@ -10,9 +11,42 @@ import jbarge.Barge;
  * The implementation uses a recursive algorithm / backtracking technique
  * and is partly based on an implementation of the eight queens problem as shown
  * in "Java for Everyone, 2e by Cay Horstmann.
+ * Alternatively the stage-by-stage dynamic program of Malandraki and Dial is used, which
+ * keeps only the earliest arrival time for each label (S, k). If the waiting profiles
+ * satisfy the FIFO property (arriving later never means leaving earlier), the dominated
+ * labels can not lead to an earlier leave time. This is O(2^n*n^2) instead of O(n!).
+ * The Factor slack method breaks the FIFO property, see SlackPolicy.isFifo(), then the
+ * branch and bound is used instead of the dynamic program, as for more than MAX_DP_NODES nodes.
+ * The dominated labels can tie with the best leave time, so the tie is resolved afterwards,
+ * see resolveTies().
  */
  public class TDTSP{
 
+ /**
+ * Solution methods. ENUMERATION examines every tour, DYNAMIC_PROGRAM uses the stage-wise dynamic program,
+ * BRANCH_AND_BOUND examines the tours in the same order as ENUMERATION but prunes with lower bounds,
+ * PARALLEL is the branch and bound in fork-join tasks and gives the same tour as BRANCH_AND_BOUND.
+ */
+ public static final int ENUMERATION = 1;
+ public static final int DYNAMIC_PROGRAM = 2;
+ public static final int BRANCH_AND_BOUND = 3;
+ public static final int PARALLEL = 4;
+
+ /**
+ * The number of levels of the search tree that the PARALLEL method splits into tasks, see SearchTask.
+ */
+ int splitDepth;
+
+ /**
+ * The visited set is an int bitmask, which limits the number of nodes.
+ */
+ public static final int MAX_NODES = 31;
+
+ /**
+ * The dynamic program stores a label index for every (S, k), which limits the number of nodes.
+ */
+ public static final int MAX_DP_NODES = 20;
+
  /**
  * The sailing times. This is a smaller version of the sailing times table in the simulation class. It
  * only contains the terminals that this barge has to visit.
@@ -25,7 +59,12 @@ import jbarge.Barge;
  Barge barge;
 
  /**
- * Number of nodes in the graph, excluding the depot (support up to 27 nodes excluding depot, can easily be extended if necess
+ * The time dependent travel times of the barge.
+ */
+ TravelTimes travelTimes;
+
+ /**
+ * Number of nodes in the graph, excluding the depot (support up to 31 nodes excluding depot, the visited set is an int bitmask)
  */
  public int numNodes;
 
@@ -34,6 +73,11 @@ import jbarge.Barge;
  */
  public String bestRoute;
 
+ /**
+ * The best route as a sequence of nodes, e.g., {0, 1, 5, 9, 0}. bestRoute is the String notation of this route.
+ */
+ public int[] bestTour;
+
  /**
  * The best leave time is the time in of leaving the port. The best sojourn time is
  * the time of leaving the port minus the time of arrival at the port.
@@ -41,56 +85,152 @@ import jbarge.Barge;
  public int bestLeaveTime, bestSojournTime;
 
  /**
- * The number of 0's is the number of nodes excluding the depot node 0, plus 5 zeros to store the last node visited.
- * This is created by the method initial()
+ * The sailing time of the best route. Used to select the route with the least sailing time if
+ * there is more than one route with the lowest sojourn time.
+ */
+ public int bestSailingTime;
+
+ /**
+ * The number of search nodes examined (partial solutions, or labels of the dynamic program) and whether
+ * the best route is proven optimal. It is not proven optimal if a budget stopped the search.
  */
- String sInitial;
+ public long nodesExpanded;
+ public boolean optimal;
 
  int startTime;
 
- //the current stage and the previous stage is retained.
- Stage currentStage;
+ /**
+ * The route of the partial solution that is currently examined. Index 0 is the depot.
+ */
+ int[] route;
+
+ //The best accepted tours with corresponding cost, only collected by the ENUMERATION method
+ AcceptedTours accepted;
 
- //Accepted tours with corresponding cost
- ArrayList<String> acceptedTour;
- ArrayList<Integer> acceptedCost;
+ /**
+ * Lower bounds used by the branch and bound, indexed by node. minSailingTo is the least sailing time to the node
+ * from any other node, minStay is the least waiting time plus the handling time at the node.
+ */
+ int[] minSailingTo, minStay;
 
  public TDTSP(int startTime, Barge barge){
+ this(startTime, barge, ENUMERATION);
+ }
 
- this.barge = barge;
- this.startTime = startTime;
- this.sailingTimes = barge.sailingTimes;
- this.numNodes = sailingTimes.length-1;
- this.sInitial= this.initial(numNodes);
+ /**
+ * Solves the TDTSP without a fork-join pool, so PARALLEL searches sequentially, and keeps only the best tour.
+ * @param startTime the time the barge starts the rotation
+ * @param barge the barge for which the TDTSP is solved
+ * @param method ENUMERATION, DYNAMIC_PROGRAM, BRANCH_AND_BOUND or PARALLEL
+ */
+ public TDTSP(int startTime, Barge barge, int method){
+ this(startTime, barge, method, null, 0, 0, 0);
+ }
 
- this.acceptedTour = new ArrayList<String>();
- this.acceptedCost = new ArrayList<Integer>();
- this.currentStage = new Stage();
+ /**
+ * @param startTime the time the barge starts the rotation
+ * @param barge the barge for which the TDTSP is solved
+ * @param method ENUMERATION, DYNAMIC_PROGRAM, BRANCH_AND_BOUND or PARALLEL
+ * @param pool the fork-join pool of the PARALLEL method, or null to search sequentially. A pool that was shut down at
+ * the end of the run is not used.
+ * @param splitDepth the number of levels of the search tree that PARALLEL splits into tasks
+ * @param parallelMinNodes the least number of nodes for which PARALLEL splits the search
+ * @param acceptedLimit the maximum number of accepted tours kept for getAccepted(), 0 keeps only the best tour
+ */
+ public TDTSP(int startTime, Barge barge, int method, ForkJoinPool pool, int splitDepth, int parallelMinNodes,
+ int acceptedLimit){
 
- PartialSolution start = new PartialSolution(sInitial,sInitial, this);
- this.solve(start,this.startTime, "");
+ this.initialize(startTime, barge, acceptedLimit);
+ this.splitDepth = splitDepth;
+
+ // the dominance of the dynamic program is only valid for FIFO travel times, and its label index limits
+ // the number of nodes
+ if(method == DYNAMIC_PROGRAM && (!travelTimes.fifo || numNodes > MAX_DP_NODES)){
+ method = BRANCH_AND_BOUND;
+ }
+
+ if(method == DYNAMIC_PROGRAM){
+ this.solveDynamicProgram();
+ assert this.checkDynamicProgram() : "dynamic program differs from enumeration for " + barge;
+ this.resolveTies();
+ }
+ else if(method == BRANCH_AND_BOUND || method == PARALLEL){
+ this.lowerBounds();
+ PartialSolution start = new PartialSolution(0, 0, 0, 0, this);
+ BranchAndBound search;
+ if(method == PARALLEL && pool != null && !pool.isShutdown() && numNodes >= parallelMinNodes){
+ search = pool.invoke(new SearchTask(this, start, this.startTime, 0, 0, new int[numNodes+2], new AtomicLong(Long.MAX_VALUE)));
+ }
+ else{
+ search = new BranchAndBound(this, null);
+ search.search(start, this.startTime, 0, 0);
+ }
+ this.accept(search.incumbentTour, search.incumbentCost, search.incumbentSailing);
+ this.nodesExpanded = search.nodes;
+ }
+ else{
+ PartialSolution start = new PartialSolution(0, 0, 0, 0, this);
+ this.solve(start,this.startTime, 0, 0);
+ }
 
+ this.optimal = true;
  this.bestRoute();
+ }
 
- this.currentStage.cost.clear();
- this.currentStage.pred.clear();
- this.currentStage.set.clear();
+ /**
+ * Solves the TDTSP with the branch and bound within a budget. The search starts with a known tour as
+ * incumbent, so that there always is a route when the budget is used. The best route is only proven
+ * optimal if the search was completed within the budget.
+ * @param startTime the time the barge starts the rotation
+ * @param barge the barge for which the TDTSP is solved
+ * @param incumbent the known tour, e.g., {0, 1, 5, 9, 0}
+ * @param maxNodes the maximum number of nodes to examine
+ * @param deadline the System.nanoTime() at which the search stops
+ */
+ public TDTSP(int startTime, Barge barge, int[] incumbent, long maxNodes, long deadline){
+
+ this.initialize(startTime, barge, 0);
+
+ this.lowerBounds();
+ BranchAndBound search = new BranchAndBound(this, null);
+ search.setIncumbent(incumbent, travelTimes.leaveTime(incumbent, numNodes+1, startTime), travelTimes.sailingTime(incumbent, numNodes+1));
+ search.setBudget(maxNodes, deadline);
+ search.search(new PartialSolution(0, 0, 0, 0, this), this.startTime, 0, 0);
+
+ this.accept(search.incumbentTour, search.incumbentCost, search.incumbentSailing);
+ this.nodesExpanded = Math.min(search.nodes, maxNodes);
+ this.optimal = !search.aborted;
+ this.bestRoute();
  }
 
- public void solve(PartialSolution sol, int time, String pred){
+ void initialize(int startTime, Barge barge, int acceptedLimit){
+ this.barge = barge;
+ this.startTime = startTime;
+ this.travelTimes = new TravelTimes(barge);
+ this.sailingTimes = travelTimes.sailingTimes;
+ this.numNodes = travelTimes.numNodes;
+ this.route = new int[numNodes+2];
 
+ this.accepted = new AcceptedTours(acceptedLimit);
+ }
+
+ /**
+ * The recursive algorithm that examines all tours.
+ * @param sol the partial solution
+ * @param time the departure time from the previous node
+ * @param sailing the sailing time of the partial solution, including the sailing to its last node
+ * @param depth the position of the last node in the route
+ */
+ public void solve(PartialSolution sol, int time, int sailing, int depth){
 
+ this.nodesExpanded++;
 
  //compute cost to cost (cost = arrival time)
  int tdtt = sol.timeDependentTravelTime(time);
  time += tdtt;
 
- this.currentStage.addCost(time);
- //add to set
- this.currentStage.addSet(sol.currentSet);
-//add to route
- pred = pred +" "+ sol.getLastNodeVisited();
- this.currentStage.addPred(pred);
+ //add to route
+ this.route[depth] = sol.lastNode;
 
  int exam = sol.examine();
  if (exam == PartialSolution.ACCEPT){
@@ -98,171 +238,217 @@ import jbarge.Barge;
  //return to the depot
  int lastNode = sol.getLastNodeVisited();
  time+=sol.computeCost(lastNode, 0);
- pred = pred +" "+ 0;
+ sailing+=sol.computeCost(lastNode, 0);
+ this.route[depth+1] = 0;
 
- //add solution to list
- this.acceptedTour.add(pred);
- this.acceptedCost.add(time);
+ //keep the solution if it is the best so far
+ this.accept(this.route, time, sailing);
+ this.accepted.offer(this.route, time, sailing);
 
  }
  else if (exam == PartialSolution.CONTINUE){
  for(PartialSolution p : sol.extend()){
- solve(p, time, pred);
+ solve(p, time, sailing + sol.computeCost(sol.lastNode, p.lastNode), depth+1);
  }
  }
  }
 
  /**
- * Initialize the first set binary string.
- * Number of 0's is the number of nodes excluding the depot node 0, plus 5 zeros to store the last node visited.
- * Nodes visited and last node node visited (does not include depot), also known as set S and node k.
- * @param numNodes
- * @return
+ * Accepts a complete tour. It replaces the best tour if it has a lower cost, or the same cost and less
+ * sailing time. A solution with less sailing time is preferred because it will cost less fuel cost.
+ * If there are more tours with the same cost and sailing time the first one is kept.
+ * @param route the tour, it is copied if it becomes the best tour
+ * @param cost the leave time
+ * @param sailing the sailing time
  */
- public String initial(int numNodes){
- String s= "00000";
- for(int i = 0; i<numNodes; i++){
- s+="0";
+ void accept(int[] route, int cost, int sailing){
+ if(this.bestTour == null || cost < this.bestLeaveTime || (cost == this.bestLeaveTime && sailing < this.bestSailingTime)){
+ this.bestTour = route.clone();
+ this.bestLeaveTime = cost;
+ this.bestSailingTime = sailing;
  }
- return s;
  }
 
  /**
- * Set the best route to the route with the least cost from the accepted tours list.
+ * Computes the lower bounds minSailingTo and minStay for every node.
  */
- public void bestRoute(){
- int index = this.minimizeSailingtime();
- this.bestRoute = this.acceptedTour.get(index);
- this.bestLeaveTime = this.acceptedCost.get(index);
- this.bestSojournTime = this.bestLeaveTime - this.startTime;
+ void lowerBounds(){
+ this.minSailingTo = new int[numNodes+1];
+ this.minStay = new int[numNodes+1];
+ for(int j=1; j<=numNodes; j++){
+ int min = Integer.MAX_VALUE;
+ for(int i=0; i<=numNodes; i++){
+ if(i != j){
+ min = Math.min(min, sailingTimes[i][j]);
+ }
+ }
+ this.minSailingTo[j] = min;
+ this.minStay[j] = travelTimes.minStay(j);
+ }
  }
 
  /**
- * This method converts the best route to a printable String for the console
- * @return a string with the best route and associated cost
+ * Solve the TDTSP with the dynamic program of Malandraki and Dial. Stage k+1 is created from stage k
+ * by extending every label with every unvisited node. Of all labels with the same (S, k) only the one
+ * with the earliest arrival time is kept, if the arrival times are equal the one with the least sailing time.
+ * The best tour of the last stage is accepted.
  */
- public String bestRouteToString(){
- String best = this.bestRoute;
- String converted = "";
- for(int i=0; i<best.length(); i++){
- String c = ""+best.charAt(i);
- if(c.equals(" ")){
- converted += " ";
+ public void solveDynamicProgram(){
+
+ // index of label (S, k) in its stage, at S*numNodes + k-1. -1 if the label does not exist (yet)
+ int[] labelIndex = new int[(1 << numNodes) * numNodes];
+ Arrays.fill(labelIndex, -1);
+
+ // stage 0 only contains the depot
+ Stage[] stages = new Stage[numNodes+1];
+ stages[0] = new Stage(1);
+ stages[0].add(0, 0, this.startTime + this.timeDependentTravelTime(0, 0, this.startTime), 0, -1);
+
+ for(int k=0; k<numNodes; k++){
+ Stage stage = stages[k];
+ Stage next = new Stage(Math.max(16, stage.size()*(numNodes-k)));
+ for(int l=0; l<stage.size(); l++){
+ int set = stage.set[l];
+ int origin = stage.last[l];
+ int time = stage.cost[l];
+ for(int node = 1; node <= numNodes; node++){
+ int bit = 1 << (node-1);
+ if((set & bit) == 0){
+ int arrival = time + this.timeDependentTravelTime(origin, node, time);
+ this.nodesExpanded++;
+ int sailing = stage.sailing[l] + sailingTimes[origin][node];
+ int key = (set | bit) * numNodes + node-1;
+ int index = labelIndex[key];
+ if(index < 0){
+ labelIndex[key] = next.add(set | bit, node, arrival, sailing, l);
+ }
+ else if(arrival < next.cost[index] || (arrival == next.cost[index] && sailing < next.sailing[index])){
+ //the new label dominates the existing label
+ next.replace(index, arrival, sailing, l);
  }
- else{
- int ter = Integer.parseInt(c);
- converted += barge.terminals.get(ter).toString();
  }
  }
- return converted;
+ }
+ stages[k+1] = next;
  }
 
- /**
- * Puts all the accepted tours with associated cost in a String that is made for the console
- * @return
- */
- public String getAccepted(){
+ // return to the depot and select the best label of the last stage
+ Stage last = stages[numNodes];
+ int best = -1, bestCost = 0, bestSailing = 0;
+ for(int l=0; l<last.size(); l++){
+ int cost = last.cost[l] + sailingTimes[last.last[l]][0];
+ int sailing = last.sailing[l] + sailingTimes[last.last[l]][0];
+ if(best < 0 || cost < bestCost || (cost == bestCost && sailing < bestSailing)){
+ best = l;
+ bestCost = cost;
+ bestSailing = sailing;
+ }
+ }
 
- String acceptedTours = "";
+ // follow the predecessors back to the depot to get the tour
+ int[] tour = new int[numNodes+2];
+ int label = best;
+ for(int k=numNodes; k>=0; k--){
+ tour[k] = stages[k].last[label];
+ label = stages[k].pred[label];
+ }
+ tour[numNodes+1] = 0;
 
- for(int i=0; i<this.acceptedTour.size(); i++){
- //get tour at index i
- String tour = acceptedTour.get(i);
+ this.accept(tour, bestCost, bestSailing);
+ }
 
- //convert tour
- String convTour = "";
- for(int j=0; j<tour.length(); j++){
- String c = ""+tour.charAt(j);
- if(c.equals(" ")){
- convTour += " ";
+ /**
+ * Selects the same tour as the other methods among the tours with the leave time of the dynamic program.
+ * The dynamic program keeps one label per (S, k), so a label that arrives later with less sailing time is
+ * dropped, although it can reach the same leave time after waiting. The other methods select the tour with the
+ * least sailing time, and of these the first in the enumeration order. The branch and bound selects that tour
+ * with the leave time and sailing time of the dynamic program as bound, so it only examines the branches that
+ * can tie with it.
+ */
+ void resolveTies(){
+ this.lowerBounds();
+ BranchAndBound search = new BranchAndBound(this, new AtomicLong(BranchAndBound.pack(bestLeaveTime, bestSailingTime)));
+ search.search(new PartialSolution(0, 0, 0, 0, this), this.startTime, 0, 0);
+ if(search.incumbentTour != null){
+ this.bestTour = null;
+ this.accept(search.incumbentTour, search.incumbentCost, search.incumbentSailing);
  }
- else{
- int ter = Integer.parseInt(c);
- convTour += barge.terminals.get(ter).toString();
+ this.nodesExpanded += search.nodes;
  }
-}
 
- //get associated costs
- int cost = this.acceptedCost.get(i);
+ /**
+ * Checks the result of the dynamic program against a full enumeration, only when assertions are enabled
+ * (java -ea), because the enumeration is O(n!).
+ * @return true if the enumeration finds no earlier leave time
+ */
+ boolean checkDynamicProgram(){
+ TDTSP enumeration = new TDTSP(this.startTime, this.barge, ENUMERATION);
+ return enumeration.bestLeaveTime == this.bestLeaveTime;
+ }
 
- //add to the string
- acceptedTours += "Tour: " + convTour + "\t Cost: " + cost + "\n";
+ /**
+ * get the time dependent travel time between origin and destin
+ * as a function of the departure time from the origin node of the link.
+ * @param origin index of the origin node
+ * @param destin index of the destination node
+ * @param departureTime departure time from the origin node
+ * @return sailing time + waiting time + handling time
+ */
+ public int timeDependentTravelTime(int origin, int destin, int departureTime){
+ return travelTimes.timeDependentTravelTime(origin, destin, departureTime);
  }
 
- return acceptedTours;
+ /**
+ * Set the best route and sojourn time from the best accepted tour.
+ */
+ public void bestRoute(){
+ this.bestRoute = Rotation.routeToString(this.bestTour);
+ this.bestSojournTime = this.bestLeaveTime - this.startTime;
+ }
 
+ /**
+ * This method converts the best route to a printable String for the console
+ * @return a string with the best route and associated cost
+ */
+ public String bestRouteToString(){
+ return Rotation.routeToTerminalString(this.bestTour, barge);
  }
 
  /**
- * If there are more than 1 best tour this method will select the tour
- * with the least sailing time. A solution with less sailing time is
- * preferred because it will cost less fuel cost.
- * @return the index in acceptedTours of the tour with the least sailingTime
- *
+ * Puts the kept accepted tours with associated cost in a String that is made for the console,
+ * from best to worst. If no accepted tours are kept (see the acceptedLimit of the constructor) only the best tour is added.
+ * @return
  */
- public int minimizeSailingtime(){
- //a list to store all indexes with the lowest costs
- ArrayList<Integer> indexes = new ArrayList<Integer>();
+ public String getAccepted(){
 
- // find the lowest cost
- int minCost = Collections.min(this.acceptedCost);
- int indexBestTour = this.acceptedCost.indexOf(minCost);
+ StringBuilder acceptedTours = new StringBuilder();
 
- // find all tours with that cost
- for(int i=0; i<this.acceptedCost.size(); i++){
- //check if tours has the same cost as minCost
- if(this.acceptedCost.get(i) == minCost){
- //add the index
- indexes.add(i);
- }
+ if(this.accepted.heap.isEmpty()){
+ return acceptedTours.append("Tour: ").append(Rotation.routeToTerminalString(this.bestTour, barge))
+ .append("\t Cost: ").append(this.bestLeaveTime).append("\n").toString();
  }
 
- //check if there is more than 1 best tours
- if(indexes.size()>1){
- //a list to save the sailing times
- ArrayList<Integer> sTimes = new ArrayList<Integer>(indexes.size());
-
- //compute the sailing times for each of these tours
- for(int i : indexes){
- //get the tour and compute its sailing time
- String tour = this.acceptedTour.get(i);
- int sailingTime = this.computeSailingtime(tour);
- //add the sailing to the list
- sTimes.add(sailingTime);
+ for(Tour tour : this.accepted.sorted()){
+ //add the converted tour and the associated costs to the string
+ acceptedTours.append("Tour: ").append(Rotation.routeToTerminalString(tour.route, barge))
+ .append("\t Cost: ").append(tour.cost).append("\n");
  }
 
- // index of the minimum sailing time. if there are more than 1 than the
- // first occurrence in the list is sufficient.
- int minSailingTime = Collections.min(sTimes);
- int indexSTimes = sTimes.indexOf(minSailingTime);
- indexBestTour = indexes.get(indexSTimes);
- }
- return indexBestTour;
+ return acceptedTours.toString();
+
  }
 
  /**
- * Compute the total sailing time of a specific tour. This method is used
- * in the minSailingTime() method.
- * @param route a String representation of the tour. e.g., "0 1 5 9 0"
+ * Compute the total sailing time of a specific tour.
+ * @param route the sequence of nodes of the tour. e.g., {0, 1, 5, 9, 0}
  * @return the sailing time of a tour
  *
  */
- public int computeSailingtime(String route){
+ public int computeSailingtime(int[] route){
  int sailingTime=0;
-
- // iterate over the String
- // -2 because the last destination node is already reached at tour.length()-2
- for(int i=0; i<route.length()-2; i++){
- String c = ""+route.charAt(i);
- if(!c.equals(" ")){
- int origin = Integer.parseInt(c);
- //the destination node is 2 indexes further in String tour
- String d = ""+route.charAt(i+2);
- int destin = Integer.parseInt(d);
-
+ for(int i=0; i<route.length-1; i++){
  //add sailing time between this node and the next node
- sailingTime+=this.sailingTimes[origin][destin];
- }
+ sailingTime+=this.sailingTimes[route[i]][route[i+1]];
  }
  return sailingTime;
  }
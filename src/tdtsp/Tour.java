@@ -0,0 +1,38 @@
+package tdtsp;
+
+ /**
+ * A complete tour with its leave time (cost) and sailing time. Tours are ordered on cost, then on
+ * sailing time, then on the order in which they were accepted.
+ */
+ public class Tour implements Comparable<Tour>{
+
+ /**
+ * The sequence of nodes, e.g., {0, 1, 5, 9, 0}
+ */
+ public int[] route;
+
+ public int cost, sailing;
+
+ /**
+ * The number of tours accepted before this tour.
+ */
+ long order;
+
+ public Tour(int[] route, int cost, int sailing, long order){
+ this.route = route;
+ this.cost = cost;
+ this.sailing = sailing;
+ this.order = order;
+ }
+
+ @Override
+ public int compareTo(Tour other){
+ if(this.cost != other.cost){
+ return this.cost < other.cost ? -1 : 1;
+ }
+ if(this.sailing != other.sailing){
+ return this.sailing < other.sailing ? -1 : 1;
+ }
+ return this.order < other.order ? -1 : (this.order == other.order ? 0 : 1);
+ }
+ }
@@ -0,0 +1,205 @@
+package tdtsp;
+
+import java.util.Arrays;
+
+import jbarge.Barge;
+import jbarge.WaitingProfile;
+
+ /**
+ * The time dependent travel times of a barge. The travel time from an origin to a destination is
+ * the sailing time plus the maximum waiting time and the handling time at the destination, as a
+ * function of the departure time from the origin. It is used by all route solvers.
+ * The waiting profiles and handling times are resolved to arrays indexed by node, and the travel times
+ * are cached per (origin, destination, departure time), because the same arcs are evaluated in many
+ * branches of a search. The waiting profiles do not change during a solve, so the cache is never stale.
+ * The cache is not thread safe, parallel searches use a copy, see TravelTimes(TravelTimes).
+ */
+ public class TravelTimes{
+
+ /**
+ * The sailing times of the barge. Index 0 is the depot.
+ */
+ public int[][] sailingTimes;
+
+ /**
+ * Number of nodes, excluding the depot.
+ */
+ public int numNodes;
+
+ Barge barge;
+
+ /**
+ * The waiting profile and handling time of every node. Index 0 is the depot.
+ */
+ WaitingProfile[] waitingProfiles;
+ int[] handlingTimes;
+
+ /**
+ * True if the travel times of all arcs satisfy the FIFO property, see WaitingProfile.isFifo().
+ */
+ public boolean fifo;
+
+ /**
+ * The cache: an open addressing hash table of keys, see key(), and travel times.
+ */
+ static final long EMPTY = Long.MIN_VALUE;
+ static final int INITIAL_CAPACITY = 256;
+ static final int MAX_CAPACITY = 1 << 20;
+ long[] keys;
+ int[] values;
+ int size;
+
+ public TravelTimes(Barge barge){
+ this.barge = barge;
+ this.sailingTimes = barge.sailingTimes;
+ this.numNodes = sailingTimes.length-1;
+
+ this.waitingProfiles = new WaitingProfile[numNodes+1];
+ this.handlingTimes = new int[numNodes+1];
+ this.fifo = true;
+ for(int node=0; node<=numNodes; node++){
+ this.waitingProfiles[node] = barge.waitingProfiles[node];
+ this.handlingTimes[node] = barge.handlingTimes.get(node);
+ this.fifo &= this.waitingProfiles[node].isFifo();
+ }
+ this.clearCache(INITIAL_CAPACITY);
+ }
+
+ /**
+ * Creates travel times with the same sailing times, waiting profiles and handling times, but with an own cache.
+ */
+ public TravelTimes(TravelTimes times){
+ this.barge = times.barge;
+ this.sailingTimes = times.sailingTimes;
+ this.numNodes = times.numNodes;
+ this.waitingProfiles = times.waitingProfiles;
+ this.handlingTimes = times.handlingTimes;
+ this.fifo = times.fifo;
+ this.clearCache(INITIAL_CAPACITY);
+ }
+
+ /**
+ * get the time dependent travel time between origin and destin
+ * as a function of the departure time from the origin node of the link.
+ * @param origin index of the origin node
+ * @param destin index of the destination node
+ * @param departureTime departure time from the origin node
+ * @return sailing time + waiting time + handling time
+ */
+ public int timeDependentTravelTime(int origin, int destin, int departureTime){
+ long key = key(origin, destin, departureTime);
+ int mask = keys.length-1;
+ int i = hash(key) & mask;
+ while(keys[i] != EMPTY){
+ if(keys[i] == key){
+ return values[i];
+ }
+ i = (i+1) & mask;
+ }
+
+ int travelTime = this.computeTravelTime(origin, destin, departureTime);
+ if(2*(size+1) > keys.length){
+ // grow the table, or start again if it is at the maximum capacity
+ this.rehash(keys.length < MAX_CAPACITY ? keys.length*2 : keys.length);
+ mask = keys.length-1;
+ i = hash(key) & mask;
+ while(keys[i] != EMPTY){
+ i = (i+1) & mask;
+ }
+ }
+ keys[i] = key;
+ values[i] = travelTime;
+ size++;
+ return travelTime;
+ }
+
+ /**
+ * Computes the time dependent travel time without the cache. Can be used by several threads.
+ * @see #timeDependentTravelTime(int, int, int)
+ */
+ public int computeTravelTime(int origin, int destin, int departureTime){
+ int sailingTime = sailingTimes[origin][destin];
+ int waitingTime = waitingProfiles[destin].getMaxWaitingTime(departureTime+sailingTime);
+ return sailingTime + waitingTime + handlingTimes[destin];
+ }
+
+ /**
+ * The minimum time spent at a node: the minimum waiting time plus the handling time.
+ */
+ public int minStay(int node){
+ return waitingProfiles[node].getMinWaitingTime() + handlingTimes[node];
+ }
+
+ /**
+ * The key of an arc and departure time: the departure time in the high 32 bits and the index of the arc,
+ * origin*(numNodes+1) + destin, in the low 32 bits, so the key is unique for any number of nodes.
+ */
+ long key(int origin, int destin, int departureTime){
+ return ((long) departureTime << 32) | ((origin * (numNodes+1) + destin) & 0xFFFFFFFFL);
+ }
+
+ static int hash(long key){
+ return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+ }
+
+ void clearCache(int capacity){
+ this.keys = new long[capacity];
+ Arrays.fill(this.keys, EMPTY);
+ this.values = new int[capacity];
+ this.size = 0;
+ }
+
+ /**
+ * Moves the cached travel times to a table with the given capacity. If the capacity does not grow the cache is cleared.
+ */
+ void rehash(int capacity){
+ long[] oldKeys = this.keys;
+ int[] oldValues = this.values;
+ this.clearCache(capacity);
+ if(capacity == oldKeys.length){
+ return;
+ }
+ int mask = capacity-1;
+ for(int j=0; j<oldKeys.length; j++){
+ if(oldKeys[j] != EMPTY){
+ int i = hash(oldKeys[j]) & mask;
+ while(keys[i] != EMPTY){
+ i = (i+1) & mask;
+ }
+ keys[i] = oldKeys[j];
+ values[i] = oldValues[j];
+ size++;
+ }
+ }
+ }
+
+ /**
+ * Computes the time of leaving the port after sailing a (partial) route. The route starts at the depot,
+ * after the last node in the route the barge returns to the depot.
+ * @param route the nodes, route[0] is the depot, e.g., {0, 1, 5, 9}
+ * @param length the number of nodes in route that are used
+ * @param startTime the time at the depot
+ * @return the leave time
+ */
+ public int leaveTime(int[] route, int length, int startTime){
+ int time = startTime + this.timeDependentTravelTime(0, 0, startTime);
+ for(int i=1; i<length; i++){
+ time += this.timeDependentTravelTime(route[i-1], route[i], time);
+ }
+ return time + sailingTimes[route[length-1]][0];
+ }
+
+ /**
+ * Computes the sailing time of a (partial) route, including the return to the depot.
+ * @param route the nodes, route[0] is the depot, e.g., {0, 1, 5, 9}
+ * @param length the number of nodes in route that are used
+ * @return the sailing time
+ */
+ public int sailingTime(int[] route, int length){
+ int sailingTime = 0;
+ for(int i=1; i<length; i++){
+ sailingTime += sailingTimes[route[i-1]][route[i]];
+ }
+ return sailingTime + sailingTimes[route[length-1]][0];
+ }
+ }